@@ -3,6 +3,11 @@ package Controller;
 import Controller.Exceptions.InvalidPlacement;
 import DataStructures.FrozenStack;
 import FlowNetwork.FlowNetwork;
+import FlowNetwork.FlowStatistics;
+import FlowNetwork.NewtonSolver;
+import FlowNetwork.NonlinearElement;
+import FlowNetwork.Tolerance;
+import FlowNetwork.TransientSimulation;
 import Model.FluidTraversal.*;
 import Model.FluidTraversal.Component;
 import View.ButtonPanel;
@@ -20,10 +25,20 @@ import java.awt.event.MouseListener;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 
 public class Controller {
 
+    private static final int TOLERANCE_SAMPLES = 10000, NEWTON_ITERATIONS = 50;
+    // the same circuit always gives the same spread
+    private static final long TOLERANCE_SEED = 1;
+    private static final double DEFAULT_TIME_STEP = 0.01;
+    private static final int DEFAULT_TIME_STEPS = 1000;
+    // the exponent of the turbulent pressure drop of a pipe by Hazen and Williams
+    private static final double TURBULENT_EXPONENT = 1.852;
+
     private final GraphingPanel graph;
     private final GraphingProperties properties;
 
@@ -34,10 +49,13 @@ public class Controller {
     private final HashMap<Point, Connector> inputs;
     private final HashMap<Connector, Connector> outputs;
     private final HashMap<Point, Double> componentValue;
+    private final HashMap<Component, Double> tolerancePercents, turbulenceCoefficients;
 
-    private boolean inPipeMode, inPumpMode, inLinkMode;
+    private boolean inPipeMode, inPumpMode, inCapacitorMode, inInductorMode, inLinkMode;
 
     private Point lastClick;
+    private double timeStep;
+    private int timeSteps;
 
     public Controller(MainFrame mainFrame, GraphingProperties gProperties){
         this.graph = mainFrame.getGraphingPanel();
@@ -48,8 +66,12 @@ public class Controller {
         this.inputs = new HashMap<>();
         this.outputs = new HashMap<>();
         this.componentValue = new HashMap<>();
+        this.tolerancePercents = new HashMap<>();
+        this.turbulenceCoefficients = new HashMap<>();
         this.circuit = new Circuit();
         this.lastClick = null;
+        this.timeStep = DEFAULT_TIME_STEP;
+        this.timeSteps = DEFAULT_TIME_STEPS;
 
         setGraphingBackground(gProperties);
         this.addListeners(mainFrame.getButtonPanel());
@@ -58,9 +80,14 @@ public class Controller {
     private void addListeners(ButtonPanel bp){
         bp.getNewPipeButton().addActionListener(e -> this.enterPipeMode());
         bp.getNewPumpButton().addActionListener(e -> this.enterPumpMode());
+        bp.getNewCapacitorButton().addActionListener(e -> this.enterCapacitorMode());
+        bp.getNewInductorButton().addActionListener(e -> this.enterInductorMode());
         bp.getLinkButton().addActionListener(e -> this.enterLinkMode());
         bp.getCalculateButton().addActionListener(e -> this.calculate());
+        bp.getSimulateButton().addActionListener(e -> this.simulate());
         bp.getConfigButton().addActionListener(e -> this.configureSelection());
+        bp.getToleranceButton().addActionListener(e -> this.configureTolerance());
+        bp.getTurbulenceButton().addActionListener(e -> this.configureTurbulence());
         bp.getRotateButton().addActionListener(e -> this.rotateSelection());
         bp.getDeleteButton().addActionListener(e -> this.removeSelection());
         bp.getExitModeButton().addActionListener(e -> this.resetState());
@@ -85,6 +112,8 @@ public class Controller {
     private void onGraphClicked(Point p){
         if(inPipeMode) placeResistor(p);
         if(inPumpMode) placeBattery(p);
+        if(inCapacitorMode) placeCapacitor(p);
+        if(inInductorMode) placeInductor(p);
         if(inLinkMode) placeWire(p);
         lastClick = p;
     }
@@ -111,6 +140,26 @@ public class Controller {
         this.componentValue.put(inPoint, newVoltageSource.getVoltage());
         updateGraphics();
     }
+    private void placeCapacitor(Point p){
+        Point inPoint;
+        try{inPoint = placer.placeComponent(p);}
+        catch(InvalidPlacement e){return;}
+        Capacitor newCapacitor = circuit.newCapacitor();
+        this.inputs.put(inPoint, newCapacitor.getInput());
+        this.outputs.put(newCapacitor.getInput(), newCapacitor.getOutput());
+        this.componentValue.put(inPoint, newCapacitor.getCapacitance());
+        updateGraphics();
+    }
+    private void placeInductor(Point p){
+        Point inPoint;
+        try{inPoint = placer.placeComponent(p);}
+        catch(InvalidPlacement e){return;}
+        Inductor newInductor = circuit.newInductor();
+        this.inputs.put(inPoint, newInductor.getInput());
+        this.outputs.put(newInductor.getInput(), newInductor.getOutput());
+        this.componentValue.put(inPoint, newInductor.getInductance());
+        updateGraphics();
+    }
     private void placeWire(Point click){
         if(lastClick == null || !placer.isOpenWire(lastClick)) return;
         try{ placer.placeWire(lastClick, click); }
@@ -137,6 +186,21 @@ public class Controller {
             return promptPressure();}
         return pressure;
     }
+    // starts from the current value and gives null when the dialog is cancelled
+    private Double promptChange(String message, double current){
+        String answer = JOptionPane.showInputDialog(message, current);
+        if(answer == null) return null;
+        try{return Double.parseDouble(answer);}
+        catch(NumberFormatException e){
+            JOptionPane.showMessageDialog(null, "Please input a valid value!", "faulty user", JOptionPane.PLAIN_MESSAGE);
+            return promptChange(message, current);}
+    }
+    private Component getSelection(){
+        if(lastClick == null) return null;
+        Point selectionInpoint = placer.getComponentInput(lastClick);
+        if(selectionInpoint == null) return null;
+        return inputs.get(selectionInpoint).getComponent();
+    }
     private void configureSelection(){
         System.out.println("Entered Config");
         if(lastClick == null) return;
@@ -150,10 +214,48 @@ public class Controller {
             case VoltageSource voltageSource -> {
                 input = promptPressure();
                 circuit.setVoltage(voltageSource, promptPressure());}
+            case Capacitor capacitor -> {
+                Double capacitance = promptChange("Set accumulator capacitance", capacitor.getCapacitance());
+                if(capacitance == null) return;
+                input = capacitance;
+                circuit.setCapacitance(capacitor, input);}
+            case Inductor inductor -> {
+                Double inductance = promptChange("Set pipe inertance", inductor.getInductance());
+                if(inductance == null) return;
+                input = inductance;
+                circuit.setInductance(inductor, input);}
             default -> {System.out.println("Selection invalid");return;}}
         this.componentValue.put(selectionInpoint, input);
         updateGraphics();
     }
+    // the tolerance stays as it is unless another one is entered
+    private void configureTolerance(){
+        Component selection = getSelection();
+        if(selection == null) return;
+        Double tolerance = promptChange("Set tolerance in percent, 0 for none", tolerancePercents.getOrDefault(selection, 0.0));
+        if(tolerance == null) return;
+        if(tolerance > 0){
+            circuit.setTolerance(selection, Tolerance.normal(tolerance));
+            tolerancePercents.put(selection, tolerance);}
+        else{
+            circuit.removeTolerance(selection);
+            tolerancePercents.remove(selection);}
+    }
+    // the characteristic stays as it is unless another coefficient is entered
+    private void configureTurbulence(){
+        if(!(getSelection() instanceof Resistor resistor)){
+            System.out.println("Selection invalid");
+            return;}
+        Double turbulence = promptChange("Set turbulent loss coefficient of the pipe, 0 for none",
+                turbulenceCoefficients.getOrDefault(resistor, 0.0));
+        if(turbulence == null) return;
+        if(turbulence > 0){
+            circuit.setCharacteristic(resistor, NonlinearElement.powerLaw(turbulence, TURBULENT_EXPONENT));
+            turbulenceCoefficients.put(resistor, turbulence);}
+        else{
+            circuit.removeCharacteristic(resistor);
+            turbulenceCoefficients.remove(resistor);}
+    }
 
     private void rotateSelection(){
         if(lastClick == null) return;
@@ -180,6 +282,8 @@ public class Controller {
         this.inputs.remove(selectionInpoint);
         this.outputs.remove(c);
         circuit.remove(c.getComponent());
+        this.tolerancePercents.remove(c.getComponent());
+        this.turbulenceCoefficients.remove(c.getComponent());
         System.out.println("Component removed");
         updateGraphics();
     }
@@ -196,6 +300,16 @@ public class Controller {
         inPumpMode = true;
         System.out.println("VoltageSource Mode");
     }
+    private void enterCapacitorMode(){
+        resetState();
+        inCapacitorMode = true;
+        System.out.println("Capacitor Mode");
+    }
+    private void enterInductorMode(){
+        resetState();
+        inInductorMode = true;
+        System.out.println("Inductor Mode");
+    }
     private void enterLinkMode(){
         resetState();
         inLinkMode = true;
@@ -205,6 +319,8 @@ public class Controller {
     private void resetState(){
         inPipeMode = false;
         inPumpMode = false;
+        inCapacitorMode = false;
+        inInductorMode = false;
         inLinkMode = false;
         System.out.println("State was reset");
     }
@@ -212,7 +328,31 @@ public class Controller {
 
     /* CALCULATE FLOW THROUGH EACH COMPONENT */
     private void calculate(){
-        // Add Components with connected Connectors to the same junction
+        connectJunctions();
+        // Create new FlowNetwork of those junctions
+        Function<Component, Double> f = Component::getResistance;
+        FlowNetwork<Component> network = new FlowNetwork<Component>(circuit.getJunctions(), f, FlowNetwork.Analysis.NODAL);
+        // A charged capacitor carries no flow, so it is left out of the steady state
+        for(Capacitor capacitor : circuit.getCapacitors())
+            if(network.edgeOrdinal(capacitor) >= 0) network.removeEdge(capacitor);
+        HashMap<Component, Double> equivalentResistances = new HashMap<>();
+        // Add the pumps as pressure difference sources
+        for(VoltageSource voltageSource : circuit.getVoltageSources()){
+            double equivalentResistance =
+                    network.setPressure(voltageSource, voltageSource.getVoltage(), voltageSource.getOutput().getJunction());
+            equivalentResistances.put(voltageSource, equivalentResistance);
+        }
+        // Prints the flow through each component to the terminal
+        network.flowResult().forEach((c, flow) ->
+                System.out.println(c.getClass() + " : R(" + c.getResistance() + ") =  " + flow));
+        equivalentResistances.forEach((c, r) -> System.out.println(c.toString() + " equivalent resistance = " + r));
+        if(!circuit.getCharacteristics().isEmpty()) solveTurbulent(network);
+        if(!circuit.getTolerances().isEmpty()) sampleTolerances(network);
+    }
+
+    // Add Components with connected Connectors to the same junction, in place of the junctions of the last calculation
+    private void connectJunctions(){
+        circuit.disconnectAll();
         HashSet<HashSet<Point>> junctions = placer.getLinkedComponentBounds();
         for(HashSet<Point> junction : junctions){
             Junction newJunction = circuit.newJunction();
@@ -225,20 +365,84 @@ public class Controller {
                     continue;}
                 throw new RuntimeException("Point without corresponding connector");}
         }
-        // Create new FlowNetwork of those junctions
-        Function<Component, Double> f = Component::getResistance;
-        FlowNetwork<Component> network = new FlowNetwork<Component>(circuit.getJunctions(), f);
-        HashMap<Component, Double> equivalentResistances = new HashMap<>();
-        // Add the pumps as pressure difference sources
-        for(VoltageSource voltageSource : circuit.getVoltageSources()){
-            double equivalentResistance =
-                    network.setPressure(voltageSource, voltageSource.getVoltage(), voltageSource.getOutput().getJunction());
-            equivalentResistances.put(voltageSource, equivalentResistance);
-        }
-        // Prints the flow through each component to the terminal
-        for(Component c : network.flowsThrough().keySet())
-            System.out.println(c.getClass() + " : R(" + c.getResistance() + ") =  " + network.flowsThrough().get(c));
-        equivalentResistances.forEach((c, r) -> System.out.println(c.toString() + " equivalent resistance = " + r));
+    }
+
+    // Prints the flow through each component when the turbulent pipes lose pressure by their characteristics
+    private void solveTurbulent(FlowNetwork<Component> network){
+        HashMap<Component, NonlinearElement> characteristics = new HashMap<>(circuit.getCharacteristics());
+        characteristics.keySet().removeIf(c -> network.edgeOrdinal(c) < 0);
+        NewtonSolver<Component> solver = network.newtonSolver(characteristics, 1e-9, NEWTON_ITERATIONS);
+        System.out.println("Turbulent flow: " + solver.convergence());
+        network.flowResult().forEach((c, flow) ->
+                System.out.println(c.getClass() + " : R(" + c.getResistance() + ") =  " + Math.abs(solver.flowThrough(c))));
+    }
+
+    // Prints how far the flow through each component is spread by the tolerances of the components, once the samples
+    // are solved in the background
+    private void sampleTolerances(FlowNetwork<Component> network){
+        HashMap<Component, Tolerance> tolerances = new HashMap<>(circuit.getTolerances());
+        tolerances.keySet().removeIf(c -> network.edgeOrdinal(c) < 0);
+        new SwingWorker<FlowStatistics<Component>, Void>(){
+            @Override
+            protected FlowStatistics<Component> doInBackground(){
+                return network.monteCarlo(tolerances, TOLERANCE_SAMPLES, TOLERANCE_SEED);}
+            @Override
+            protected void done(){
+                FlowStatistics<Component> statistics;
+                try{statistics = get();}
+                catch(InterruptedException | ExecutionException e){
+                    System.out.println("Sampling the tolerances failed: " + e.getCause());
+                    return;}
+                network.flowResult().forEach((c, flow) ->
+                        System.out.println(c.getClass() + " : mean " + statistics.mean(c) + ", deviation "
+                                + statistics.standardDeviation(c) + ", 5% to 95% " + statistics.percentile(c, 5) + " to "
+                                + statistics.percentile(c, 95)));}
+        }.execute();
+    }
+
+    /* SIMULATE FLOW THROUGH TIME */
+    // Simulates how the flows settle after the pumps are switched on, where capacitors and inductors are in the network
+    private void simulate(){
+        Double step = promptChange("Set time step", timeStep);
+        if(step == null) return;
+        Double steps = promptChange("Set amount of steps", timeSteps);
+        if(steps == null) return;
+        if(step <= 0 || steps < 1){
+            JOptionPane.showMessageDialog(null, "Please input a valid value!", "faulty user", JOptionPane.PLAIN_MESSAGE);
+            return;}
+        this.timeStep = step;
+        this.timeSteps = steps.intValue();
+        connectJunctions();
+        FlowNetwork<Component> network = new FlowNetwork<Component>(circuit.getJunctions(), Component::getResistance, FlowNetwork.Analysis.NODAL);
+        for(VoltageSource voltageSource : circuit.getVoltageSources())
+            network.setPressure(voltageSource, voltageSource.getVoltage(), voltageSource.getOutput().getJunction());
+        HashMap<Component, Double> capacitances = circuit.getCapacitances(), inductances = circuit.getInductances();
+        capacitances.keySet().removeIf(c -> network.edgeOrdinal(c) < 0);
+        inductances.keySet().removeIf(c -> network.edgeOrdinal(c) < 0);
+        double simulatedStep = timeStep;
+        int simulatedSteps = timeSteps;
+        // Prints the flow through each capacitor and inductor ten times during the simulation, which runs in the background
+        new SwingWorker<Void, String>(){
+            @Override
+            protected Void doInBackground(){
+                TransientSimulation<Component> simulation = network.transientSimulation(capacitances, inductances,
+                        simulatedStep, TransientSimulation.Integration.TRAPEZOIDAL);
+                int every = Math.max(1, simulatedSteps / 10);
+                simulation.run(simulatedSteps, (step, time, flows) -> {
+                    if(step % every != 0) return;
+                    publish("t = " + time);
+                    capacitances.keySet().forEach(c -> publish(c.getClass() + " : C(" + capacitances.get(c) + ") =  " + flows[network.edgeOrdinal(c)]));
+                    inductances.keySet().forEach(c -> publish(c.getClass() + " : L(" + inductances.get(c) + ") =  " + flows[network.edgeOrdinal(c)]));});
+                return null;}
+            @Override
+            protected void process(List<String> lines){
+                lines.forEach(System.out::println);}
+            @Override
+            protected void done(){
+                try{get();}
+                catch(InterruptedException | ExecutionException e){
+                    System.out.println("Simulation failed: " + e.getCause());}}
+        }.execute();
     }
 
 
@@ -260,9 +464,11 @@ public class Controller {
         FrozenStack<Graphic> graphics = new FrozenStack<>();
         for(Point[] connectorPoints : allComponentBounds){
             double componentValue = this.componentValue.get(connectorPoints[0]);
-            ComponentGraphic graphic = inputs.get(connectorPoints[0]).getComponent().getClass() == Resistor.class ?
-                    grapher.getResistorGraphic(connectorPoints[0], connectorPoints[1], componentValue) :
-                    grapher.getBatteryGraphic(connectorPoints[0], connectorPoints[1], componentValue);
+            ComponentGraphic graphic = switch(inputs.get(connectorPoints[0]).getComponent()){
+                case Resistor resistor -> grapher.getResistorGraphic(connectorPoints[0], connectorPoints[1], componentValue);
+                case Capacitor capacitor -> grapher.getCapacitorGraphic(connectorPoints[0], connectorPoints[1], componentValue);
+                case Inductor inductor -> grapher.getInductorGraphic(connectorPoints[0], connectorPoints[1], componentValue);
+                default -> grapher.getBatteryGraphic(connectorPoints[0], connectorPoints[1], componentValue);};
             graphics.push(graphic);
         }
         for(int i = 0; i < links.size(); i++)
@@ -47,6 +47,21 @@ public class GraphicController {
     }
 
 
+    public CapacitorGraphic getCapacitorGraphic(Point inPoint, Point outPoint, double value){
+        int[] constructor = getConstructorArguments(inPoint, outPoint);
+        Point cornerPoint = new Point(constructor[0], constructor[1]);
+        int integerValue = (int) Math.round(value);
+        return new CapacitorGraphic(cornerPoint, constructor[2], constructor[3], integerValue);
+    }
+
+    public InductorGraphic getInductorGraphic(Point inPoint, Point outPoint, double value){
+        int[] constructor = getConstructorArguments(inPoint, outPoint);
+        Point cornerPoint = new Point(constructor[0], constructor[1]);
+        int integerValue = (int) Math.round(value);
+        return new InductorGraphic(cornerPoint, constructor[2], constructor[3], integerValue);
+    }
+
+
     public ArrayList<ComponentGraphic> getComponentGraphics(){
         return this.componentGraphics;
     }
@@ -0,0 +1,211 @@
+package FlowNetwork;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
+
+    /*
+    Splits a graph into its blocks, the biconnected components, and keeps one NodalSystem for every block.
+
+    Two blocks share at most one vertex, an articulation point, and no cycle passes through more than one block. A
+    pressure source can therefore only drive a flow around the cycles of its own block: everything that hangs off an
+    articulation point has a single vertex in common with the block, so no flow can enter it and leave it again. Every
+    source is solved by the system of its block alone, and all sources in a block share that system.
+
+    The blocks are found in linear time by the depth first search of Hopcroft and Tarjan. low[v] is the earliest vertex
+    that can be reached from the subtree of v through one back edge. When low[w] >= index[v] for a child w of v, the edges
+    above w on the edge stack form a block. The search is iterative, so deep graphs can not overflow the call stack.
+    Systems are only built for blocks that contain a source, in parallel on the pool of the SolverOptions, and are kept
+    until the block changes. A system whose Laplacian has a factorization saved by NetworkFile takes it instead of
+    factorizing again.
+
+    Everything is indexed by the ordinals of the CompactGraph: blockOf and positionOf give the block of every edge and
+    where it is in the edge list of the block, so an edge joins or leaves a block in constant time.
+     */
+public class Blocks {
+
+    private final CompactGraph graph;
+    private final SolverOptions options;
+    private final Map<Long, SparseLDL> factorizations;
+    private final ArrayList<NodalSystem> systems;
+    private int[] blockOf, positionOf;
+    private int[][] edgesOf;
+    private int[] sizeOf;
+    private int blockCount;
+
+    /**
+     * @param factorizations saved factorizations for the systems of the blocks, by the fingerprint of their matrix
+     */
+    protected Blocks(CompactGraph graph, SolverOptions options, Map<Long, SparseLDL> factorizations){
+        this.graph = graph;
+        this.options = options;
+        this.factorizations = factorizations;
+        this.systems = new ArrayList<>();
+        int n = graph.vertexCount();
+        this.blockOf = new int[graph.edgeCount()];
+        this.positionOf = new int[graph.edgeCount()];
+        Arrays.fill(blockOf, -1);
+        this.edgesOf = new int[16][];
+        this.sizeOf = new int[16];
+        IntBuffer offset = graph.offsets(), incident = graph.incidents();
+        int[] index = new int[n];
+        int[] low = new int[n];
+        Arrays.fill(index, -1);
+        int[] edgeStack = new int[graph.edgeCount()];
+        int[] nodeStack = new int[n];
+        int[] parentEdge = new int[n];
+        int[] next = new int[n];
+        int visited = 0, edges = 0;
+        for(int root = 0; root < n; root++){
+            if(index[root] >= 0) continue;
+            index[root] = low[root] = visited++;
+            int depth = 0;
+            nodeStack[0] = root;
+            parentEdge[0] = -1;
+            next[0] = offset.get(root);
+            while(depth >= 0){
+                int v = nodeStack[depth];
+                if(next[depth] < offset.get(v + 1)){
+                    int e = incident.get(next[depth]++);
+                    if(e == parentEdge[depth]) continue;
+                    int w = graph.other(e, v);
+                    if(w == v){
+                        // a loop carries no flow and is a block of its own
+                        addBlock(new int[]{e}, 1);
+                        continue;}
+                    if(index[w] < 0){
+                        edgeStack[edges++] = e;
+                        index[w] = low[w] = visited++;
+                        nodeStack[++depth] = w;
+                        parentEdge[depth] = e;
+                        next[depth] = offset.get(w);}
+                    else if(index[w] < index[v]){
+                        edgeStack[edges++] = e;
+                        low[v] = Math.min(low[v], index[w]);}
+                    continue;
+                }
+                int toParent = parentEdge[depth--];
+                if(toParent < 0) continue;
+                int parent = nodeStack[depth];
+                low[parent] = Math.min(low[parent], low[v]);
+                if(low[v] < index[parent]) continue;
+                int first = edges;
+                while(edgeStack[--first] != toParent);
+                addBlock(Arrays.copyOfRange(edgeStack, first, edges), edges - first);
+                edges = first;
+            }
+        }
+    }
+
+    private void addBlock(int[] edges, int size){
+        int block = blockCount++;
+        if(block == edgesOf.length){
+            this.edgesOf = Arrays.copyOf(edgesOf, 2 * block);
+            this.sizeOf = Arrays.copyOf(sizeOf, 2 * block);}
+        edgesOf[block] = edges;
+        sizeOf[block] = size;
+        systems.add(null);
+        for(int i = 0; i < size; i++){
+            blockOf[edges[i]] = block;
+            positionOf[edges[i]] = i;}
+    }
+
+    // the block of an edge, or -1 if it is in none
+    protected int blockOf(int e){
+        return e < blockOf.length ? blockOf[e] : -1;
+    }
+
+    /**
+     * @return the system of the block of an edge, which is built if it does not exist yet
+     */
+    protected NodalSystem systemOf(int e){
+        int block = blockOf[e];
+        if(systems.get(block) == null) systems.set(block, newSystem(block));
+        return systems.get(block);
+    }
+
+    /**
+     * @return the system of the block of an edge, or null if it has not been built
+     */
+    protected NodalSystem builtSystemOf(int e){
+        int block = blockOf(e);
+        return block < 0 ? null : systems.get(block);
+    }
+
+    /**
+     * Builds the systems of the blocks of the edges in parallel, unless they already exist
+     */
+    protected void build(int[] edges){
+        HashMap<Integer, ForkJoinTask<NodalSystem>> tasks = new HashMap<>();
+        for(int e : edges){
+            int block = blockOf[e];
+            if(systems.get(block) == null && !tasks.containsKey(block))
+                tasks.put(block, options.pool.submit(() -> newSystem(block)));
+        }
+        tasks.forEach((block, task) -> systems.set(block, task.join()));
+    }
+
+    private NodalSystem newSystem(int block){
+        return new NodalSystem(graph, Arrays.copyOf(edgesOf[block], sizeOf[block]), options, factorizations);
+    }
+
+    // the systems that have been built, in the order of their blocks
+    protected List<NodalSystem> builtSystems(){
+        return systems.stream().filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * @return a block that contains both vertices, or -1 if there is none
+     */
+    protected int commonBlock(int a, int b){
+        IntBuffer offset = graph.offsets(), incident = graph.incidents();
+        HashSet<Integer> blocksOfA = new HashSet<>();
+        for(int i = offset.get(a); i < offset.get(a + 1); i++){
+            int block = blockOf(incident.get(i));
+            if(block < 0) continue;
+            if(a == b) return block;
+            blocksOfA.add(block);}
+        for(int i = offset.get(b); i < offset.get(b + 1); i++){
+            int block = blockOf(incident.get(i));
+            if(block >= 0 && blocksOfA.contains(block)) return block;}
+        return -1;
+    }
+
+    // An edge between two vertices of a block keeps the block biconnected, so it joins the block
+    protected void add(int e, int block){
+        if(e >= blockOf.length){
+            int capacity = Math.max(2 * blockOf.length, e + 1);
+            int old = blockOf.length;
+            this.blockOf = Arrays.copyOf(blockOf, capacity);
+            this.positionOf = Arrays.copyOf(positionOf, capacity);
+            Arrays.fill(blockOf, old, capacity, -1);}
+        if(sizeOf[block] == edgesOf[block].length)
+            edgesOf[block] = Arrays.copyOf(edgesOf[block], Math.max(2 * sizeOf[block], 4));
+        blockOf[e] = block;
+        positionOf[e] = sizeOf[block];
+        edgesOf[block][sizeOf[block]++] = e;
+    }
+
+    // A block without one of its edges may fall apart into smaller blocks, but its system still solves it correctly
+    protected void remove(int e){
+        int block = blockOf(e);
+        if(block < 0) return;
+        // the last edge of the block takes the place of the removed one
+        int last = edgesOf[block][--sizeOf[block]];
+        edgesOf[block][positionOf[e]] = last;
+        positionOf[last] = positionOf[e];
+        blockOf[e] = -1;
+    }
+
+    // drops the system of a block, which is built again from its edges when it is needed
+    protected void forget(int block){
+        systems.set(block, null);
+    }
+
+}
@@ -0,0 +1,187 @@
+package FlowNetwork;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+    /*
+    The graph every solver of a FlowNetwork runs on, stored in primitive arrays instead of one object per vertex and edge.
+
+    Vertices and edges are dense int ordinals. Edge e goes from from[e] to to[e] and has the weight weight[e], so an edge
+    costs two ints and a double. The edges at every vertex are kept in compressed sparse row form: the edges at v are
+    incident[offset[v]] to incident[offset[v + 1] - 1], which costs one more int for each end of an edge. A loop is only
+    listed once at its vertex.
+
+    Ordinals are never reused. A removed edge keeps its ordinal with the ends -1, so the ordinals held by the solvers stay
+    valid. Adding or removing an edge leaves the rows out of date, and they are sorted again by a counting sort over all
+    edges the next time they are read. That costs a couple of linear passes, which is no more than the solve that follows
+    every change of the network anyway.
+
+    The arrays are buffers of the Storage of the network, so with Storage.OFF_HEAP the whole graph lives outside the heap
+    and the garbage collector only sees the five buffers, however many edges there are.
+     */
+public class CompactGraph {
+
+    private final Storage storage;
+    private IntBuffer from, to;
+    private DoubleBuffer weight;
+    private int vertexCount, edgeCount, capacity;
+    private IntBuffer offset, incident;
+
+    /**
+     * @param vertices     the amount of vertices, which get the ordinals 0 to vertices - 1
+     * @param edgeCapacity the amount of edges that fit before the arrays grow
+     * @param storage      where the arrays are kept
+     */
+    protected CompactGraph(int vertices, int edgeCapacity, Storage storage){
+        this.storage = storage;
+        this.capacity = Math.max(edgeCapacity, 4);
+        this.from = storage.ints(capacity);
+        this.to = storage.ints(capacity);
+        this.weight = storage.doubles(capacity);
+        this.vertexCount = vertices;
+    }
+
+    protected CompactGraph(int vertices, int edgeCapacity){
+        this(vertices, edgeCapacity, Storage.HEAP);
+    }
+
+    /**
+     * A graph on buffers that already hold its edges and rows, like the sections of a mapped NetworkFile. The buffers
+     * are used as they are, and only replaced by buffers of the storage when the graph changes or its rows are sorted
+     * again. Read only buffers are copied at the first change
+     */
+    protected CompactGraph(int vertices, int edges, IntBuffer from, IntBuffer to, DoubleBuffer weight,
+                           IntBuffer offset, IntBuffer incident, Storage storage){
+        this.storage = storage;
+        this.vertexCount = vertices;
+        this.edgeCount = edges;
+        this.capacity = edges;
+        this.from = from;
+        this.to = to;
+        this.weight = weight;
+        this.offset = offset;
+        this.incident = incident;
+    }
+
+    /**
+     * @return a graph that shares the edges and rows of this one read only, with its own copy of the weights. It can be
+     *         reweighed while this graph is read, but neither must change its edges
+     */
+    protected CompactGraph withOwnWeights(){
+        IntBuffer offset = offsets(), incident = incidents();
+        return new CompactGraph(vertexCount, edgeCount, from.asReadOnlyBuffer(), to.asReadOnlyBuffer(),
+                storage.copyOf(weight, edgeCount, Math.max(edgeCount, 1)), offset.asReadOnlyBuffer(),
+                incident.asReadOnlyBuffer(), storage);
+    }
+
+    /**
+     * @return the ordinal of the new vertex
+     */
+    protected int addVertex(){
+        this.offset = null;
+        return vertexCount++;
+    }
+
+    /**
+     * @return the ordinal of the new edge
+     */
+    protected int addEdge(int a, int b, double w){
+        if(edgeCount == capacity) copyEdges(Math.max(2 * edgeCount, 4));
+        from.put(edgeCount, a);
+        to.put(edgeCount, b);
+        weight.put(edgeCount, w);
+        this.offset = null;
+        return edgeCount++;
+    }
+
+    protected void removeEdge(int e){
+        if(from.isReadOnly()) copyEdges(capacity);
+        from.put(e, -1);
+        to.put(e, -1);
+        this.offset = null;
+    }
+
+    protected boolean exists(int e){
+        return e >= 0 && e < edgeCount && from.get(e) >= 0;
+    }
+
+    protected int from(int e){
+        return from.get(e);
+    }
+
+    protected int to(int e){
+        return to.get(e);
+    }
+
+    protected double weight(int e){
+        return weight.get(e);
+    }
+
+    protected void setWeight(int e, double w){
+        if(weight.isReadOnly()) copyEdges(capacity);
+        weight.put(e, w);
+    }
+
+    // copies the edges into writable buffers of the storage, when they grow or are read only like a mapped file
+    private void copyEdges(int capacity){
+        this.capacity = capacity;
+        this.from = storage.copyOf(from, edgeCount, capacity);
+        this.to = storage.copyOf(to, edgeCount, capacity);
+        this.weight = storage.copyOf(weight, edgeCount, capacity);
+    }
+
+    // the other end of an edge at v
+    protected int other(int e, int v){
+        int a = from.get(e);
+        return a == v ? to.get(e) : a;
+    }
+
+    protected int vertexCount(){
+        return vertexCount;
+    }
+
+    // the amount of ordinals given to edges, including the removed ones
+    protected int edgeCount(){
+        return edgeCount;
+    }
+
+    /**
+     * @return the row offsets of the edges at every vertex, which must not be changed
+     */
+    protected IntBuffer offsets(){
+        if(offset == null) sortIncidence();
+        return offset;
+    }
+
+    /**
+     * @return the edges at every vertex, row by row, which must not be changed
+     */
+    protected IntBuffer incidents(){
+        if(offset == null) sortIncidence();
+        return incident;
+    }
+
+    private void sortIncidence(){
+        IntBuffer offset = storage.ints(vertexCount + 1);
+        for(int e = 0; e < edgeCount; e++){
+            int a = from.get(e), b = to.get(e);
+            if(a < 0) continue;
+            offset.put(a + 1, offset.get(a + 1) + 1);
+            if(b != a) offset.put(b + 1, offset.get(b + 1) + 1);}
+        for(int v = 0; v < vertexCount; v++) offset.put(v + 1, offset.get(v + 1) + offset.get(v));
+        // the next free place of every row, which ends at the start of the next row
+        IntBuffer next = storage.copyOf(offset, vertexCount, vertexCount);
+        IntBuffer incident = storage.ints(offset.get(vertexCount));
+        for(int e = 0; e < edgeCount; e++){
+            int a = from.get(e), b = to.get(e);
+            if(a < 0) continue;
+            incident.put(next.get(a), e);
+            next.put(a, next.get(a) + 1);
+            if(b == a) continue;
+            incident.put(next.get(b), e);
+            next.put(b, next.get(b) + 1);}
+        this.incident = incident;
+        this.offset = offset;
+    }
+
+}
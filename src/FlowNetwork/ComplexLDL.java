@@ -0,0 +1,140 @@
+package FlowNetwork;
+
+    /*
+    Factorizes a complex symmetric sparse matrix as P A P^T = L D L^T, the complex counterpart of SparseLDL. Complex
+    numbers are interleaved in double arrays, the real part at 2k and the imaginary part at 2k + 1, so no object is made
+    for any of them and a complex vector is as easy on the cache as a real vector of twice the length.
+
+    The pattern of L only depends on the pattern of A, so the ordering, the elimination tree and the column counts are
+    taken from a SparseLDL of a real matrix with the same pattern, and only the numeric step is done here, as often as the
+    values change. The arrays of the symbolic step are shared and only read, so every thread can factorize its own copy.
+    Like SparseLDL this does not pivot. That is stable for the admittances of a network whose edges all have a resistance,
+    since the real part of the matrix is positive definite then, but a network without losses can have a pivot of 0 at a
+    resonance, where its response is unbounded.
+     */
+public class ComplexLDL {
+
+    private final int n;
+    private final int[] order, position, parent, columnStart;
+    private final int[] rowIndex;
+    private final double[] values, diagonal;
+    // the work arrays of the numeric step and of the solves
+    private final double[] y, x;
+    private final int[] pattern, flag, count;
+
+    /**
+     * @param symbolic a factorization of a real matrix with the pattern of the complex matrices to factorize
+     */
+    protected ComplexLDL(SparseLDL symbolic){
+        this.n = symbolic.n;
+        this.order = symbolic.order;
+        this.parent = symbolic.parent;
+        this.columnStart = symbolic.columnStart;
+        this.position = new int[n];
+        for(int k = 0; k < n; k++) position[order[k]] = k;
+        this.rowIndex = new int[columnStart[n]];
+        this.values = new double[2 * columnStart[n]];
+        this.diagonal = new double[2 * n];
+        this.y = new double[2 * n];
+        this.x = new double[2 * n];
+        this.pattern = new int[n];
+        this.flag = new int[n];
+        this.count = new int[n];
+    }
+
+    /**
+     * Computes the numeric factorization of a complex matrix
+     * @param a       the pattern of the matrix, whose values are not read
+     * @param entries the complex value of every entry of a, interleaved in the order of a
+     */
+    protected void factorize(SparseMatrix a, double[] entries){
+        if(a.n != n || entries.length < 2 * a.nonZeros()) throw new IllegalArgumentException("The matrix does not match the factorization");
+        for(int k = 0; k < n; k++){
+            y[2 * k] = 0;
+            y[2 * k + 1] = 0;
+            int top = n;
+            flag[k] = k;
+            count[k] = 0;
+            int column = order[k];
+            for(int p = a.columnStart.get(column); p < a.columnStart.get(column + 1); p++){
+                int i = position[a.rowIndex.get(p)];
+                if(i > k) continue;
+                y[2 * i] += entries[2 * p];
+                y[2 * i + 1] += entries[2 * p + 1];
+                int length = 0;
+                for(; flag[i] != k; i = parent[i]){
+                    pattern[length++] = i;
+                    flag[i] = k;}
+                while(length > 0) pattern[--top] = pattern[--length];
+            }
+            double dr = y[2 * k], di = y[2 * k + 1];
+            y[2 * k] = 0;
+            y[2 * k + 1] = 0;
+            for(; top < n; top++){
+                int i = pattern[top];
+                double yr = y[2 * i], yi = y[2 * i + 1];
+                y[2 * i] = 0;
+                y[2 * i + 1] = 0;
+                int end = columnStart[i] + count[i];
+                for(int p = columnStart[i]; p < end; p++){
+                    int r = 2 * rowIndex[p];
+                    double lr = values[2 * p], li = values[2 * p + 1];
+                    y[r] -= lr * yr - li * yi;
+                    y[r + 1] -= lr * yi + li * yr;}
+                // l_ki = y_i / d_i
+                double er = diagonal[2 * i], ei = diagonal[2 * i + 1], norm = er * er + ei * ei;
+                double lr = (yr * er + yi * ei) / norm, li = (yi * er - yr * ei) / norm;
+                dr -= lr * yr - li * yi;
+                di -= lr * yi + li * yr;
+                if(end >= columnStart[i + 1]) throw new IllegalArgumentException("The matrix does not match the factorization");
+                rowIndex[end] = k;
+                values[2 * end] = lr;
+                values[2 * end + 1] = li;
+                count[i]++;
+            }
+            if(dr == 0 && di == 0) throw new RuntimeException("Matrix is singular.");
+            diagonal[2 * k] = dr;
+            diagonal[2 * k + 1] = di;
+        }
+    }
+
+    /**
+     * Solves A x = b
+     * @param b the interleaved right hand side, which is overwritten by the interleaved solution x
+     */
+    protected void solve(double[] b){
+        for(int k = 0; k < n; k++){
+            x[2 * k] = b[2 * order[k]];
+            x[2 * k + 1] = b[2 * order[k] + 1];}
+        for(int j = 0; j < n; j++){
+            double xr = x[2 * j], xi = x[2 * j + 1];
+            if(xr == 0 && xi == 0) continue;
+            for(int p = columnStart[j]; p < columnStart[j + 1]; p++){
+                int r = 2 * rowIndex[p];
+                double lr = values[2 * p], li = values[2 * p + 1];
+                x[r] -= lr * xr - li * xi;
+                x[r + 1] -= lr * xi + li * xr;}}
+        for(int j = 0; j < n; j++){
+            double xr = x[2 * j], xi = x[2 * j + 1];
+            double dr = diagonal[2 * j], di = diagonal[2 * j + 1], norm = dr * dr + di * di;
+            x[2 * j] = (xr * dr + xi * di) / norm;
+            x[2 * j + 1] = (xi * dr - xr * di) / norm;}
+        for(int j = n - 1; j >= 0; j--){
+            double xr = x[2 * j], xi = x[2 * j + 1];
+            for(int p = columnStart[j]; p < columnStart[j + 1]; p++){
+                int r = 2 * rowIndex[p];
+                double lr = values[2 * p], li = values[2 * p + 1];
+                xr -= lr * x[r] - li * x[r + 1];
+                xi -= lr * x[r + 1] + li * x[r];}
+            x[2 * j] = xr;
+            x[2 * j + 1] = xi;}
+        for(int k = 0; k < n; k++){
+            b[2 * order[k]] = x[2 * k];
+            b[2 * order[k] + 1] = x[2 * k + 1];}
+    }
+
+    public int size(){
+        return n;
+    }
+
+}
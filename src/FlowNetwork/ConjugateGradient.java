@@ -0,0 +1,108 @@
+package FlowNetwork;
+
+import java.nio.DoubleBuffer;
+
+    /*
+    Solves A x = b iteratively by the preconditioned conjugate gradient method, where A must be symmetric and positive
+    definite. Every iteration costs one multiplication by A and one application of the preconditioner, and only a few
+    vectors of the size of b are kept, so the memory stays linear in the size of the network.
+
+    The iteration stops when the relative residual ||b - A x|| / ||b|| is at most the tolerance, or when the iteration
+    budget is used up. The largest residual and the total amount of iterations over all solves are kept, so that the
+    caller can see how accurate the flows it calculated from the solves are.
+
+    The vectors are buffers of the Storage of the network. Only b itself is an array, which is copied into the residual
+    at the start of a solve and receives the solution at the end.
+     */
+public class ConjugateGradient implements LinearSolver {
+
+    private final SparseMatrix a;
+    private final Preconditioner preconditioner;
+    private final double tolerance;
+    private final int maxIterations;
+    private final DoubleBuffer x, r, z, p, q;
+    private int iterations;
+    private double largestResidual;
+    private boolean converged;
+
+    protected ConjugateGradient(SparseMatrix a, Preconditioner preconditioner, double tolerance, int maxIterations,
+                                Storage storage){
+        this.a = a;
+        this.preconditioner = preconditioner;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        int n = a.n;
+        this.x = storage.doubles(n);
+        this.r = storage.doubles(n);
+        this.z = storage.doubles(n);
+        this.p = storage.doubles(n);
+        this.q = storage.doubles(n);
+        this.converged = true;
+    }
+
+    @Override
+    public void solve(double[] b){
+        int n = a.n;
+        r.put(0, b, 0, n);
+        double bNorm = Math.sqrt(dot(r, r));
+        if(bNorm == 0) return;
+        for(int i = 0; i < n; i++) x.put(i, 0);
+        preconditioner.apply(r, z);
+        p.put(0, z, 0, n);
+        double rz = dot(r, z);
+        double residual = 1;
+        int iteration = 0;
+        while(iteration < maxIterations && residual > tolerance){
+            a.multiply(p, q);
+            double alpha = rz / dot(p, q);
+            addScaled(x, alpha, p);
+            addScaled(r, -alpha, q);
+            iteration++;
+            residual = Math.sqrt(dot(r, r)) / bNorm;
+            if(residual <= tolerance) break;
+            preconditioner.apply(r, z);
+            double next = dot(r, z);
+            double beta = next / rz;
+            rz = next;
+            scaleAndAdd(p, beta, z);
+        }
+        x.get(0, b, 0, n);
+        this.iterations += iteration;
+        this.largestResidual = Math.max(largestResidual, residual);
+        if(residual > tolerance) this.converged = false;
+    }
+
+    // y += alpha * x
+    private static void addScaled(DoubleBuffer y, double alpha, DoubleBuffer x){
+        for(int i = 0; i < y.capacity(); i++) y.put(i, y.get(i) + alpha * x.get(i));
+    }
+
+    // y = x + beta * y
+    private static void scaleAndAdd(DoubleBuffer y, double beta, DoubleBuffer x){
+        for(int i = 0; i < y.capacity(); i++) y.put(i, x.get(i) + beta * y.get(i));
+    }
+
+    private static double dot(DoubleBuffer u, DoubleBuffer v){
+        double sum = 0;
+        for(int i = 0; i < u.capacity(); i++) sum += u.get(i) * v.get(i);
+        return sum;
+    }
+
+    @Override
+    public int iterations(){
+        return iterations;
+    }
+
+    @Override
+    public boolean converged(){
+        return converged;
+    }
+
+    /**
+     * @return the largest relative residual any solve ended with
+     */
+    public double largestResidual(){
+        return largestResidual;
+    }
+
+}
@@ -0,0 +1,207 @@
+package FlowNetwork;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+    /*
+    Contracts the wires and the ideal pressure sources of a network, which fix the difference of potential between their
+    ends, so that a solver only sees the edges with a conductance, the branches.
+
+    A spanning forest of the other edges is searched breadth first, and every vertex gets the potential of the root of
+    its tree plus an offset, which is the sum of the pressures of the sources on its way to the root. A wire that closes
+    a loop of wires carries no flow, as in NodalSystem, and a source on a loop of wires and sources is short circuited.
+    The branches then only connect the trees, and one tree of every part that is connected through them is grounded.
+    The other roots are the unknowns of the solver, numbered by node.
+
+    The flow through a wire or source follows from the junction rule once the flows through the branches are known,
+    summed from the leaves of its tree to the root. A source with a weight is a resistor in parallel with the ideal source,
+    so the resistor stays inside the edge and does not change this flow.
+     */
+public class ConstraintForest {
+
+    // the forest, with every vertex after its parent in order
+    private final int[] order, parent, parentEdge, sourceOf;
+    private final boolean[] parentIsFrom;
+    private final double[] pressure, sign;
+    private final int unknowns;
+    final int[] node;
+    final double[] offset;
+    // the grounded root of the part of every vertex, so that two vertices are connected if their parts are the same
+    final int[] part;
+
+    /**
+     * @param branch     whether every edge by its ordinal is a branch
+     * @param sources    the ordinals of the source edges, which must not be branches
+     * @param directions the vertex of the positive pressure of every source
+     * @param pressures  the pressure of every source
+     */
+    protected ConstraintForest(CompactGraph graph, boolean[] branch, int[] sources, int[] directions, double[] pressures){
+        int m = graph.edgeCount(), vertices = graph.vertexCount();
+        this.sourceOf = new int[m];
+        Arrays.fill(sourceOf, -1);
+        this.pressure = pressures.clone();
+        this.sign = new double[sources.length];
+        for(int s = 0; s < sources.length; s++){
+            int e = sources[s];
+            if(graph.from(e) == graph.to(e)) throw new RuntimeException("The source edge must connect two different vertices!");
+            sourceOf[e] = s;
+            sign[s] = graph.from(e) == directions[s] ? 1 : -1;}
+        this.order = new int[vertices];
+        this.parent = new int[vertices];
+        this.parentEdge = new int[vertices];
+        this.parentIsFrom = new boolean[vertices];
+        this.offset = new double[vertices];
+        int[] root = searchForest(graph, branch);
+
+        // the roots of every part connected through the branches share one ground, the other roots are the unknowns
+        int[] ground = new int[vertices];
+        for(int v = 0; v < vertices; v++) ground[v] = v;
+        for(int e = 0; e < m; e++) if(branch[e]) union(ground, root[graph.from(e)], root[graph.to(e)]);
+        int[] row = new int[vertices];
+        int n = 0;
+        for(int v = 0; v < vertices; v++) row[v] = root[v] == v && find(ground, v) != v ? n++ : -1;
+        this.unknowns = n;
+        this.node = new int[vertices];
+        this.part = new int[vertices];
+        for(int v = 0; v < vertices; v++){
+            node[v] = row[root[v]];
+            part[v] = find(ground, root[v]);}
+        updateOffsets();
+    }
+
+    /**
+     * @param capacitance the capacitance of every edge by its ordinal, or 0 if it is no capacitor
+     * @param inductance  the inductance of every edge by its ordinal, or 0 if it is no inductor
+     * @return whether every edge by its ordinal is a branch, which every edge is that is neither a wire nor a source nor
+     *         a loop
+     */
+    protected static boolean[] branches(CompactGraph graph, double[] capacitance, double[] inductance, int[] sources){
+        int m = graph.edgeCount();
+        boolean[] branch = new boolean[m];
+        for(int e = 0; e < m; e++){
+            if(capacitance[e] < 0 || inductance[e] < 0) throw new RuntimeException("A capacitance or inductance can not be negative!");
+            branch[e] = graph.exists(e) && graph.from(e) != graph.to(e)
+                    && (capacitance[e] != 0 || inductance[e] != 0 || graph.weight(e) != 0);}
+        for(int e : sources){
+            if(capacitance[e] != 0 || inductance[e] != 0)
+                throw new RuntimeException("A pressure source can not be a capacitor or an inductor!");
+            branch[e] = false;}
+        return branch;
+    }
+
+    // a breadth first search through the edges that are no branches, which returns the root of the tree of every vertex
+    private int[] searchForest(CompactGraph graph, boolean[] branch){
+        IntBuffer offsets = graph.offsets(), incident = graph.incidents();
+        int vertices = graph.vertexCount();
+        int[] root = new int[vertices], depth = new int[vertices];
+        Arrays.fill(root, -1);
+        int tail = 0;
+        for(int start = 0; start < vertices; start++){
+            if(root[start] >= 0) continue;
+            root[start] = start;
+            parent[start] = -1;
+            parentEdge[start] = -1;
+            int head = tail;
+            order[tail++] = start;
+            while(head < tail){
+                int v = order[head++];
+                for(int i = offsets.get(v); i < offsets.get(v + 1); i++){
+                    int e = incident.get(i);
+                    if(e == parentEdge[v] || branch[e]) continue;
+                    int w = graph.other(e, v);
+                    if(root[w] < 0){
+                        root[w] = start;
+                        depth[w] = depth[v] + 1;
+                        parent[w] = v;
+                        parentEdge[w] = e;
+                        parentIsFrom[w] = graph.from(e) == v;
+                        order[tail++] = w;}
+                    // each edge that closes a loop is met from both of its ends, and checked from the first
+                    else if(v < w || (v == w && graph.from(e) == v)) checkLoop(e, v, w, depth);
+                }
+            }
+        }
+        return root;
+    }
+
+    // a loop of wires and sources shorts its sources, and a loop of wires alone carries no flow
+    private void checkLoop(int e, int v, int w, int[] depth){
+        boolean source = sourceOf[e] >= 0;
+        while(v != w){
+            if(depth[v] < depth[w]){
+                int swap = v;
+                v = w;
+                w = swap;}
+            source |= sourceOf[parentEdge[v]] >= 0;
+            v = parent[v];}
+        if(source) throw new RuntimeException("The source is short circuited!");
+    }
+
+    // the potential of every vertex above the root of its tree, from the pressures of the sources on the way
+    private void updateOffsets(){
+        for(int v : order){
+            int e = parentEdge[v];
+            if(e < 0){
+                offset[v] = 0;
+                continue;}
+            int s = sourceOf[e];
+            // phi_from - phi_to is the signed pressure of a source and 0 over a wire
+            double over = s < 0 ? 0 : sign[s] * pressure[s];
+            offset[v] = offset[parent[v]] + (parentIsFrom[v] ? -over : over);}
+    }
+
+    /**
+     * @return the index of the source, or -1 if the edge is no source
+     */
+    protected int sourceIndex(int edge){
+        return edge >= 0 && edge < sourceOf.length ? sourceOf[edge] : -1;
+    }
+
+    protected double pressure(int source){
+        return pressure[source];
+    }
+
+    // 1 if the pressure of the source is positive at the start of its edge, -1 if at the end
+    protected double sign(int source){
+        return sign[source];
+    }
+
+    protected int sourceCount(){
+        return pressure.length;
+    }
+
+    protected void setPressure(int source, double pressure){
+        this.pressure[source] = pressure;
+        updateOffsets();
+    }
+
+    // the amount of roots that are not grounded
+    protected int unknowns(){
+        return unknowns;
+    }
+
+    /**
+     * Sets the flows through the edges of the forest by the junction rule
+     * @param outflow what leaves every vertex through the branches, which is summed into the roots
+     * @param flows   the flow through every edge by its ordinal, positive from its start to its end
+     */
+    protected void treeFlows(double[] outflow, double[] flows){
+        for(int k = order.length - 1; k >= 0; k--){
+            int v = order[k], e = parentEdge[v];
+            if(e < 0) continue;
+            flows[e] = parentIsFrom[v] ? outflow[v] : -outflow[v];
+            outflow[parent[v]] += outflow[v];}
+    }
+
+    private static int find(int[] parent, int v){
+        while(parent[v] != v) v = parent[v] = parent[parent[v]];
+        return v;
+    }
+
+    private static void union(int[] parent, int a, int b){
+        a = find(parent, a);
+        b = find(parent, b);
+        if(a != b) parent[Math.max(a, b)] = Math.min(a, b);
+    }
+
+}
@@ -0,0 +1,26 @@
+package FlowNetwork;
+
+/**
+ * How accurately the flow of a pressure source was solved, or the flows of a NewtonSolver
+ */
+public class Convergence {
+
+    /** the amount of iterations used by the linear solver, 0 for a direct solver, or the Newton iterations of a NewtonSolver */
+    public final int iterations;
+    /** the relative residual ||b - A x|| / ||b|| of the potentials that the flows were calculated from, or of the pressure drops of a NewtonSolver */
+    public final double residual;
+    /** false if the solver stopped at its iteration budget before reaching its tolerance */
+    public final boolean converged;
+
+    public Convergence(int iterations, double residual, boolean converged){
+        this.iterations = iterations;
+        this.residual = residual;
+        this.converged = converged;
+    }
+
+    @Override
+    public String toString(){
+        return (converged ? "converged" : "not converged") + " after " + iterations + " iterations, residual = " + residual;
+    }
+
+}
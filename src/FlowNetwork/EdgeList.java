@@ -0,0 +1,212 @@
+package FlowNetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+    /*
+    Reads a network from a text edge list, one edge on every line:
+        u v weight
+        u v weight pressure
+    where u and v are the ordinals of the vertices at the ends of the edge and the fields are separated by spaces, tabs
+    or commas, so the same reader takes CSV. An edge with a fourth field is a pressure source with that pressure, which
+    is positive at u. Empty lines and lines that start with # or % are skipped, and so is a first line that starts with
+    a letter, like the header of a CSV file.
+
+    The edges go straight into a CompactGraph and are numbered in the order of their lines. The vertex ordinals are taken
+    as they are, so a gap in them leaves vertices without edges, and no object is made for any vertex or edge. The text
+    is read in chunks of a fixed size, and the numbers are parsed from the bytes of a chunk without making a String of
+    them. A weight with at most 15 significant digits and a small exponent is exact as a product or quotient of two
+    doubles, anything longer is handed to Double.parseDouble, which is the only place a String is made.
+     */
+public class EdgeList {
+
+    private static final int CHUNK = 1 << 16;
+    private static final double[] POWERS_OF_TEN = new double[23];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+    }
+
+    private final ReadableByteChannel channel;
+    private final byte[] bytes;
+    private final ByteBuffer view;
+    private int position, limit, lineEnd, cursor, line;
+    private boolean ended;
+
+    private EdgeList(ReadableByteChannel channel){
+        this.channel = channel;
+        this.bytes = new byte[CHUNK];
+        this.view = ByteBuffer.wrap(bytes);
+        this.lineEnd = -1;
+    }
+
+    /**
+     * Reads an edge list into a network of nodal analysis. Its edges are the Integers of their lines, counted from 0
+     * over the lines with an edge, and vertexAt gives its vertices
+     */
+    public static FlowNetwork<Integer> read(Path path, SolverOptions solverOptions) throws IOException{
+        return read(path, FlowNetwork.Analysis.NODAL, solverOptions);
+    }
+
+    public static FlowNetwork<Integer> read(Path path) throws IOException{
+        return read(path, FlowNetwork.Analysis.NODAL, SolverOptions.direct());
+    }
+
+    public static FlowNetwork<Integer> read(Path path, FlowNetwork.Analysis analysis, SolverOptions solverOptions)
+            throws IOException{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            return read(channel, analysis, solverOptions);
+        }
+    }
+
+    /**
+     * Reads an edge list from a channel until it ends. The channel is not closed
+     * @see #read(Path, SolverOptions)
+     */
+    public static FlowNetwork<Integer> read(ReadableByteChannel channel, FlowNetwork.Analysis analysis,
+                                            SolverOptions solverOptions) throws IOException{
+        return new EdgeList(channel).network(analysis, solverOptions);
+    }
+
+    private FlowNetwork<Integer> network(FlowNetwork.Analysis analysis, SolverOptions solverOptions) throws IOException{
+        CompactGraph graph = new CompactGraph(0, 1024, solverOptions.storage);
+        LinkedHashMap<Integer, Double> pressureOf = new LinkedHashMap<>();
+        HashMap<Integer, Integer> directionOf = new HashMap<>();
+        boolean first = true;
+        while(nextLine()){
+            skipSeparators();
+            if(cursor == lineEnd || bytes[cursor] == '#' || bytes[cursor] == '%') continue;
+            boolean header = first && Character.isLetter(bytes[cursor]);
+            first = false;
+            if(header) continue;
+            int u = parseVertex(), v = parseVertex();
+            double weight = parseWeight();
+            while(graph.vertexCount() <= Math.max(u, v)) graph.addVertex();
+            int edge = graph.addEdge(u, v, weight);
+            skipSeparators();
+            if(cursor == lineEnd) continue;
+            pressureOf.put(edge, parseNumber());
+            directionOf.put(edge, u);
+            skipSeparators();
+            if(cursor != lineEnd) throw notAnEdge();
+        }
+        FlowNetwork<Integer> network = FlowNetwork.ofGraph(graph, analysis, solverOptions, new HashMap<>());
+        for(int source : pressureOf.keySet())
+            network.setPressure(source, pressureOf.get(source), network.vertexAt(directionOf.get(source)));
+        return network;
+    }
+
+    // moves to the next line, which is bytes[position] to bytes[lineEnd - 1], and returns false after the last line
+    private boolean nextLine() throws IOException{
+        this.position = lineEnd + 1;
+        int next = position;
+        while(true){
+            while(next < limit && bytes[next] != '\n') next++;
+            if(next < limit || ended) break;
+            next -= position;
+            fill();
+            next += position;
+        }
+        if(position >= limit && ended) return false;
+        this.lineEnd = next;
+        this.cursor = position;
+        this.line++;
+        return true;
+    }
+
+    // moves the unread bytes to the front and reads the channel after them
+    private void fill() throws IOException{
+        if(position == 0 && limit == bytes.length) throw new RuntimeException("Line " + (line + 1) + " of the edge list is too long!");
+        System.arraycopy(bytes, position, bytes, 0, limit - position);
+        this.limit -= position;
+        this.lineEnd -= position;
+        this.position = 0;
+        view.clear().position(limit);
+        int read = channel.read(view);
+        if(read < 0) this.ended = true;
+        else this.limit += read;
+    }
+
+    private void skipSeparators(){
+        while(cursor < lineEnd && (bytes[cursor] == ' ' || bytes[cursor] == '\t' || bytes[cursor] == ','
+                || bytes[cursor] == '\r')) cursor++;
+    }
+
+    private int parseVertex(){
+        skipSeparators();
+        long vertex = 0;
+        int start = cursor;
+        while(cursor < lineEnd && bytes[cursor] >= '0' && bytes[cursor] <= '9' && vertex <= Integer.MAX_VALUE)
+            vertex = 10 * vertex + bytes[cursor++] - '0';
+        if(cursor == start || vertex >= Integer.MAX_VALUE || !endOfField()) throw notAnEdge();
+        return (int) vertex;
+    }
+
+    private double parseWeight(){
+        skipSeparators();
+        double weight = parseNumber();
+        if(weight < 0) throw new RuntimeException("The weight of an edge can not be negative!");
+        return weight;
+    }
+
+    // a decimal number with an optional sign, fraction and exponent
+    private double parseNumber(){
+        skipSeparators();
+        int start = cursor;
+        boolean negative = cursor < lineEnd && bytes[cursor] == '-';
+        if(cursor < lineEnd && (bytes[cursor] == '-' || bytes[cursor] == '+')) cursor++;
+        long mantissa = 0;
+        int exponent = 0, digits = 0, significant = 0;
+        boolean fraction = false;
+        for(; cursor < lineEnd; cursor++){
+            byte b = bytes[cursor];
+            if(b == '.' && !fraction){
+                fraction = true;
+                continue;}
+            if(b < '0' || b > '9') break;
+            digits++;
+            if(mantissa == 0 && b == '0'){
+                if(fraction) exponent--;
+                continue;}
+            // digits beyond the precision of a long are left to Double.parseDouble
+            if(++significant <= 18){
+                mantissa = 10 * mantissa + b - '0';
+                if(fraction) exponent--;}
+            else if(!fraction) exponent++;
+        }
+        if(digits == 0) throw notAnEdge();
+        if(cursor < lineEnd && (bytes[cursor] == 'e' || bytes[cursor] == 'E')){
+            cursor++;
+            boolean negativeExponent = cursor < lineEnd && bytes[cursor] == '-';
+            if(cursor < lineEnd && (bytes[cursor] == '-' || bytes[cursor] == '+')) cursor++;
+            int power = 0, powerStart = cursor;
+            while(cursor < lineEnd && bytes[cursor] >= '0' && bytes[cursor] <= '9' && power < 100000)
+                power = 10 * power + bytes[cursor++] - '0';
+            if(cursor == powerStart) throw notAnEdge();
+            exponent += negativeExponent ? -power : power;
+        }
+        if(!endOfField()) throw notAnEdge();
+        double value;
+        if(significant <= 15 && Math.abs(exponent) < POWERS_OF_TEN.length)
+            value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        else value = Math.abs(Double.parseDouble(new String(bytes, start, cursor - start, StandardCharsets.ISO_8859_1)));
+        return negative ? -value : value;
+    }
+
+    private boolean endOfField(){
+        return cursor == lineEnd || bytes[cursor] == ' ' || bytes[cursor] == '\t' || bytes[cursor] == ','
+                || bytes[cursor] == '\r';
+    }
+
+    private RuntimeException notAnEdge(){
+        return new RuntimeException("Line " + line + " of the edge list is not an edge!");
+    }
+
+}
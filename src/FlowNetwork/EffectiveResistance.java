@@ -0,0 +1,187 @@
+package FlowNetwork;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+    /*
+    The effective resistance between any two vertices of a network, which is the pressure over them when a flow of 1
+    enters at one and leaves at the other. All edges are resistors of their weight, as an inactive source is in the
+    superposition of a FlowNetwork, and the edges of weight 0 are wires, contracted by a ConstraintForest.
+
+    With the weighted incidence matrix W^1/2 B of the edges and the Laplacian L = B^T W B, the resistance between u and v
+    is ||W^1/2 B L^+ (e_u - e_v)||^2, a distance between the columns of W^1/2 B L^+. Spielman and Srivastava keep these
+    distances within a factor 1 +- epsilon by projecting the columns on k = O(log n / epsilon^2) random directions, as in
+    the lemma of Johnson and Lindenstrauss. So the sketch Z = Q W^1/2 B L^+ of random signs Q takes k solves with the
+    Laplacian, one for every row, and a query only compares two columns of k entries. With the bound of Achlioptas every
+    pair of the n vertices is within epsilon with a probability of at least 1 - 1 / n.
+
+    A network with fewer unknowns than rows of a sketch is solved exactly instead, by the inverse of its grounded
+    Laplacian, where R(u, v) = G_uu + G_vv - 2 G_uv. That costs a solve and the memory of a row for every unknown.
+
+    The rows are independent, so chunks of them are solved in parallel on the pool of the SolverOptions, several right
+    hand sides at a time. Every chunk has its own random generator, so the sketch only depends on the seed. The columns
+    of the sketch are kept as floats next to each other, since their error is far below epsilon.
+     */
+public class EffectiveResistance<T> {
+
+    private static final int ROW_CHUNK = 8, QUERY_CHUNK = 1024;
+
+    private final Ordinals<Vertex<T>> vertices;
+    private final ForkJoinPool pool;
+    private final int[] node, part;
+    private final int dimension;
+    // the sketch by node, or the dense inverse of the grounded Laplacian of an exact solve
+    private final float[] sketch;
+    private final double[] inverse;
+
+    /**
+     * @param epsilon the relative accuracy of the sketch, or 0 to solve exactly
+     */
+    protected EffectiveResistance(CompactGraph graph, Ordinals<Vertex<T>> vertices, double epsilon, long seed,
+                                  SolverOptions options){
+        if(epsilon < 0 || epsilon >= 1) throw new RuntimeException("The accuracy must be at least 0 and below 1!");
+        this.vertices = vertices;
+        this.pool = options.pool;
+        int m = graph.edgeCount();
+        boolean[] branch = new boolean[m];
+        for(int e = 0; e < m; e++) branch[e] = graph.exists(e) && graph.from(e) != graph.to(e) && graph.weight(e) != 0;
+        ConstraintForest forest = new ConstraintForest(graph, branch, new int[0], new int[0], new double[0]);
+        this.node = forest.node;
+        this.part = forest.part;
+        int n = forest.unknowns();
+        int rows = epsilon == 0 ? n : rowsFor(graph.vertexCount(), epsilon);
+        boolean exact = rows >= n;
+        if((long) n * (exact ? n : rows) > Integer.MAX_VALUE) throw new RuntimeException("The network is too large for this accuracy!");
+        this.dimension = exact ? n : rows;
+        this.sketch = exact ? null : new float[n * rows];
+        this.inverse = exact ? new double[n * n] : null;
+        if(n == 0) return;
+
+        SparseMatrix.Assembly assembly = new SparseMatrix.Assembly(n, options.storage);
+        int[] from = new int[m], to = new int[m];
+        double[] root = new double[m];
+        int count = 0;
+        for(int e = 0; e < m; e++){
+            if(!branch[e]) continue;
+            int a = node[graph.from(e)], c = node[graph.to(e)];
+            // a resistor between two vertices of the same tree is shorted by wires
+            if(a == c) continue;
+            double g = 1 / graph.weight(e);
+            if(a >= 0) assembly.add(a, a, g);
+            if(c >= 0) assembly.add(c, c, g);
+            if(a >= 0 && c >= 0) assembly.addSymmetric(a, c, -g);
+            from[count] = a;
+            to[count] = c;
+            root[count++] = Math.sqrt(g);}
+        int resistors = count;
+        SparseMatrix laplacian = assembly.toMatrix();
+        // a factorization is only read by its solves, but an iterative solver keeps its vectors
+        LinearSolver shared = options.method == SolverOptions.Method.DIRECT ? options.solverFor(laplacian) : null;
+
+        int chunks = (dimension + ROW_CHUNK - 1) / ROW_CHUNK;
+        SplittableRandom random = new SplittableRandom(seed);
+        SplittableRandom[] randomOf = new SplittableRandom[chunks];
+        for(int c = 0; c < chunks; c++) randomOf[c] = random.split();
+        double scale = 1 / Math.sqrt(rows);
+        AtomicInteger nextChunk = new AtomicInteger();
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int w = 0; w < Math.min(options.pool.getParallelism(), chunks); w++)
+            tasks.add(options.pool.submit(() -> {
+                LinearSolver solver = shared != null ? shared : options.solverFor(laplacian);
+                for(int c = nextChunk.getAndIncrement(); c < chunks; c = nextChunk.getAndIncrement()){
+                    int first = c * ROW_CHUNK;
+                    double[][] b = new double[Math.min(dimension, first + ROW_CHUNK) - first][n];
+                    for(int r = 0; r < b.length; r++){
+                        if(exact){
+                            b[r][first + r] = 1;
+                            continue;}
+                        // a row of Q W^1/2 B, summed into the unknowns at the ends of the edges
+                        for(int i = 0; i < resistors; i++){
+                            double y = randomOf[c].nextBoolean() ? scale * root[i] : -scale * root[i];
+                            if(from[i] >= 0) b[r][from[i]] += y;
+                            if(to[i] >= 0) b[r][to[i]] -= y;}}
+                    solver.solve(b);
+                    for(int r = 0; r < b.length; r++)
+                        for(int v = 0; v < n; v++)
+                            if(exact) inverse[v * n + first + r] = b[r][v];
+                            else sketch[v * rows + first + r] = (float) b[r][v];}}));
+        for(ForkJoinTask<?> task : tasks) task.join();
+    }
+
+    // the rows of a sketch within epsilon for all pairs of n vertices with a probability of 1 - 1 / n, by Achlioptas
+    private static int rowsFor(int n, double epsilon){
+        double rows = 6 * Math.log(Math.max(n, 2)) / (epsilon * epsilon / 2 - epsilon * epsilon * epsilon / 3);
+        return (int) Math.min(Math.ceil(rows), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the effective resistance between the vertices, infinite if they are not connected
+     */
+    public double between(Vertex<T> u, Vertex<T> v){
+        int a = vertices.get(u), b = vertices.get(v);
+        if(a < 0 || b < 0 || a >= node.length || b >= node.length) throw new RuntimeException("This vertex does not exist in network!");
+        return between(a, b);
+    }
+
+    /**
+     * @param u the ordinal of a vertex, as vertexOrdinal of the network gives it
+     * @param v the ordinal of another vertex
+     * @return the effective resistance between the vertices, infinite if they are not connected
+     */
+    public double between(int u, int v){
+        if(part[u] != part[v]) return Double.POSITIVE_INFINITY;
+        int a = node[u], b = node[v];
+        if(a == b) return 0;
+        if(inverse != null){
+            int n = dimension;
+            double r = 0;
+            if(a >= 0) r += inverse[a * n + a];
+            if(b >= 0) r += inverse[b * n + b];
+            if(a >= 0 && b >= 0) r -= 2 * inverse[a * n + b];
+            return r;}
+        int k = dimension;
+        double r = 0;
+        // a grounded vertex has the potential 0 in every row
+        for(int i = 0; i < k; i++){
+            double d = (a >= 0 ? sketch[a * k + i] : 0) - (b >= 0 ? sketch[b * k + i] : 0);
+            r += d * d;}
+        return r;
+    }
+
+    /**
+     * Answers many queries in parallel on the pool of the SolverOptions of the network
+     * @param from        the ordinals of the first vertex of every pair
+     * @param to          the ordinals of the second vertex of every pair
+     * @param resistances receives the resistance between every pair
+     */
+    public void between(int[] from, int[] to, double[] resistances){
+        if(from.length != to.length || resistances.length < from.length) throw new IllegalArgumentException("Every pair needs two vertices and a resistance");
+        int chunks = (from.length + QUERY_CHUNK - 1) / QUERY_CHUNK;
+        AtomicInteger nextChunk = new AtomicInteger();
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int w = 0; w < Math.min(pool.getParallelism(), chunks); w++)
+            tasks.add(pool.submit(() -> {
+                for(int c = nextChunk.getAndIncrement(); c < chunks; c = nextChunk.getAndIncrement())
+                    for(int i = c * QUERY_CHUNK; i < Math.min(from.length, (c + 1) * QUERY_CHUNK); i++)
+                        resistances[i] = between(from[i], to[i]);}));
+        for(ForkJoinTask<?> task : tasks) task.join();
+    }
+
+    /**
+     * @return true if the resistances are exact, false if they come from a sketch
+     */
+    public boolean isExact(){
+        return inverse != null;
+    }
+
+    /**
+     * @return the rows of the sketch, or the unknowns of an exact solve
+     */
+    public int dimension(){
+        return dimension;
+    }
+
+}
@@ -1,26 +1,50 @@
 package FlowNetwork;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.function.Function;
 
+    /*
+    Reduces the automaton of a Flow to one expression for the equivalent weight between its start and final state.
+
+    Every transition is a resistor between two states, so the automaton is reduced as an undirected network:
+        - Parallel: several resistors between the same two states become one Sum.
+        - Series: a state with two neighbours is replaced by the Product of its two resistors.
+        - A state with a single neighbour carries no flow and is removed.
+        - Y-Delta: a state with three neighbours is replaced by a triangle between them.
+        - Delta-Y: a triangle around a state with more neighbours is replaced by a star, which takes a neighbour from
+          the state so that it can be removed by Y-Delta afterwards.
+    Series-parallel networks reduce with the first three steps, and a Wheatstone bridge or other planar networks with
+    the last two. The two can undo each other, which is kept from cycling twice: Y-Delta is never applied to the center
+    of a star that Delta-Y made, since that would only bring the triangle back, and Delta-Y is tried at most once for
+    every state the network started with. If the network still has states besides the start and the final after that,
+    the rest of it is evaluated by a direct solve of its nodal equations instead.
+
+    The reduced expression is compiled once into a flat program. Every distinct expression becomes one instruction that
+    only reads the values of earlier instructions, so an expression used by several others, as the arms of a star are, is
+    evaluated once. The weights are read from a double[] indexed by the ordinal of each transition, which makes
+    evaluate(double[]) free of allocations and boxing unless the program contains a direct solve. The same program is
+    differentiated by walking it backwards, which gives the derivative by every weight for the cost of one evaluation.
+    Y-Delta divides by the arm opposite to a side, so a star with two arms of weight 0 has no triangle, and a side it
+    opens has an infinite weight, which a later step can multiply by 0. For such weights, where the reduced expression has
+    no value, the program solves the nodal equations of the unreduced network instead. That solve joins the states of
+    resistors of weight 0, leaves out open resistors and the states they cut off from the end, and so has a value for
+    every network with a flow.
+     */
 public class EvaluableRegEx<T>{
 
-    private interface Expression{
-        double evaluate();
-    }
+    private interface Expression{}
     private class Constant implements Expression {
         T content;
-        Function<T, Double> evaluate;
-        private Constant(T content, Function<T, Double> f){
+        private Constant(T content){
             this.content = content;
-            this.evaluate = f;
-        }
-        @Override
-        public double evaluate(){
-            return evaluate.apply(content);
         }
         @Override
         public String toString() {
@@ -54,13 +78,6 @@ public class EvaluableRegEx<T>{
             this.sum.add(v);
         }
         @Override
-        public double evaluate() {
-            double sum = 0;
-            for(Expression v : this.sum)
-                sum += 1 / v.evaluate();
-            return 1 / sum;
-        }
-        @Override
         public String toString() {
             StringBuilder s = new StringBuilder();
             s.append("(");
@@ -103,13 +120,6 @@ public class EvaluableRegEx<T>{
             this.product.add(v);
         }
 
-        @Override
-        public double evaluate() {
-            double product = 0;
-            for(Expression v : this.product)
-                product += v.evaluate();
-            return product;
-        }
         @Override
         public String toString() {
             StringBuilder s = new StringBuilder();
@@ -134,16 +144,396 @@ public class EvaluableRegEx<T>{
         }
     }
 
+    // (a * b + b * c + c * a) / c, the resistor between the neighbours of a and b when a star is replaced by a triangle
+    private static class StarToTriangle implements Expression {
+        Expression a, b, opposite;
+        private StarToTriangle(Expression a, Expression b, Expression opposite){
+            this.a = a;
+            this.b = b;
+            this.opposite = opposite;
+        }
+        @Override
+        public String toString(){
+            return "Y(" + a + "," + b + "," + opposite + ")";
+        }
+    }
+
+    // a * b / (a + b + c), the resistor to the state between a and b when a triangle is replaced by a star
+    private static class TriangleToStar implements Expression {
+        Expression a, b, opposite;
+        private TriangleToStar(Expression a, Expression b, Expression opposite){
+            this.a = a;
+            this.b = b;
+            this.opposite = opposite;
+        }
+        @Override
+        public String toString(){
+            return "D(" + a + "," + b + "," + opposite + ")";
+        }
+    }
+
+    // The equivalent weight of a network that could not be reduced, solved from its nodal equations when evaluated
+    private static class DirectSolve implements Expression {
+        int[] from, to;
+        Expression[] resistors;
+        double[] weight;
+        double[] potential;
+        int[] joined;
+        int size, start, end;
+        private DirectSolve(Network network, int start, int end){
+            HashMap<Integer, Integer> index = new HashMap<>();
+            for(int state : network.states()) index.put(state, index.size());
+            ArrayList<int[]> pairs = new ArrayList<>();
+            ArrayList<Expression> expressions = new ArrayList<>();
+            for(int a : network.states())
+                for(int b : network.neighbours(a))
+                    if(a < b){
+                        pairs.add(new int[]{index.get(a), index.get(b)});
+                        expressions.add(network.between(a, b));}
+            this.size = index.size();
+            this.start = index.get(start);
+            this.end = index.get(end);
+            this.from = new int[pairs.size()];
+            this.to = new int[pairs.size()];
+            for(int i = 0; i < pairs.size(); i++){
+                from[i] = pairs.get(i)[0];
+                to[i] = pairs.get(i)[1];}
+            this.resistors = expressions.toArray(new Expression[0]);
+            this.weight = new double[resistors.length];
+        }
+        // solves with the weights of the resistors in weight
+        private double solve(){
+            // resistors of weight 0 join their states, which are then solved as one
+            int[] joined = new int[size];
+            for(int v = 0; v < size; v++) joined[v] = v;
+            for(int i = 0; i < resistors.length; i++){
+                if(weight[i] == 0) joined[root(joined, from[i])] = root(joined, to[i]);}
+            int s = root(joined, start), f = root(joined, end);
+            this.potential = null;
+            if(s == f) return 0;
+            // open resistors of infinite weight can cut states off from the end, which then have no potential
+            boolean[] reached = new boolean[size];
+            reached[f] = true;
+            for(boolean grew = true; grew; ){
+                grew = false;
+                for(int i = 0; i < resistors.length; i++){
+                    int a = root(joined, from[i]), b = root(joined, to[i]);
+                    if(reached[a] != reached[b] && !Double.isInfinite(weight[i])){
+                        reached[a] = reached[b] = true;
+                        grew = true;}}}
+            if(!reached[s]) return Double.POSITIVE_INFINITY;
+            SparseMatrix.Assembly laplacian = new SparseMatrix.Assembly(size);
+            for(int v = 0; v < size; v++) if(root(joined, v) != v || v == f || !reached[v]) laplacian.add(v, v, 1);
+            for(int i = 0; i < resistors.length; i++){
+                int a = root(joined, from[i]), b = root(joined, to[i]);
+                if(a == b || !reached[a] || Double.isInfinite(weight[i])) continue;
+                double g = 1 / weight[i];
+                if(a != f) laplacian.add(a, a, g);
+                if(b != f) laplacian.add(b, b, g);
+                if(a != f && b != f) laplacian.addSymmetric(a, b, -g);}
+            double[] potential = new double[size];
+            potential[s] = 1;
+            new SparseLDL(laplacian.toMatrix()).solve(potential);
+            this.potential = potential;
+            this.joined = joined;
+            return potential[s];
+        }
+        // d R / d w_i = I_i^2 for the flows I of the last solve, which injected the flow 1 at the start
+        private double derivative(int i){
+            if(potential == null || weight[i] == 0 || Double.isInfinite(weight[i])) return 0;
+            double flow = (potential[root(joined, from[i])] - potential[root(joined, to[i])]) / weight[i];
+            return flow * flow;
+        }
+        private static int root(int[] joined, int v){
+            while(joined[v] != v) v = joined[v] = joined[joined[v]];
+            return v;
+        }
+        @Override
+        public String toString(){
+            return "Solve(" + size + " states, " + resistors.length + " resistors)";
+        }
+    }
+
+    // The automaton as an undirected network, with one expression between every pair of neighbouring states
+    private static class Network {
+        private final LinkedHashMap<Integer, LinkedHashMap<Integer, Expression>> neighbours = new LinkedHashMap<>();
+
+        private void addState(int state){
+            neighbours.putIfAbsent(state, new LinkedHashMap<>());
+        }
+
+        // a resistor parallel to an existing one is combined with it into a sum
+        private void add(int a, int b, Expression expression){
+            if(a == b) return;
+            addState(a);
+            addState(b);
+            Expression existing = neighbours.get(a).get(b);
+            if(existing != null){
+                Sum sum = new Sum();
+                sum.add(existing);
+                sum.add(expression);
+                expression = sum;}
+            neighbours.get(a).put(b, expression);
+            neighbours.get(b).put(a, expression);
+        }
+
+        private void remove(int a, int b){
+            neighbours.get(a).remove(b);
+            neighbours.get(b).remove(a);
+        }
+
+        private void removeState(int state){
+            for(int next : new ArrayList<>(neighbours(state))) remove(state, next);
+            neighbours.remove(state);
+        }
+
+        private List<Integer> neighbours(int state){
+            return new ArrayList<>(neighbours.get(state).keySet());
+        }
+
+        private Expression between(int a, int b){
+            return neighbours.get(a).get(b);
+        }
+
+        private List<Integer> states(){
+            return new ArrayList<>(neighbours.keySet());
+        }
+
+        private int newState(){
+            int state = 0;
+            for(int s : neighbours.keySet()) state = Math.max(state, s + 1);
+            addState(state);
+            return state;
+        }
+    }
+
+    private static final int LOAD = 0, SUM = 1, PRODUCT = 2, STAR_TO_TRIANGLE = 3, TRIANGLE_TO_STAR = 4, SOLVE = 5;
+
     private final Function<T, Double> getValue;
     private final Expression regEx;
+    // the network before it was reduced, which a star with arms of weight 0 is solved from
+    private DirectSolve unreduced;
+    private final HashMap<T, Integer> ordinalOf;
+    private final ArrayList<T> weightOrder;
+    private final ArrayList<DirectSolve> solves;
+    // instruction i is opcode[i] applied to the values of operands[operandStart[i]] to operands[operandStart[i + 1] - 1]
+    private final int[] opcode;
+    private final int[] argument;
+    private final int[] operandStart;
+    private final int[] operands;
+    private final double[] values;
+    private final double[] adjoints;
+    // the instruction of the reduced expression, that of the unreduced network or -1 without stars and triangles, and
+    // the one evaluated last
+    private final int result, unreducedResult;
+    private int answer;
 
     public EvaluableRegEx(LADFA<T> LADFA, Function<T, Double> getValue){
         this.getValue = getValue;
         regEx = build(LADFA);
+        this.ordinalOf = new HashMap<>();
+        this.weightOrder = new ArrayList<>();
+        this.solves = new ArrayList<>();
+        ArrayList<int[]> program = new ArrayList<>();
+        IdentityHashMap<Expression, Integer> compiled = new IdentityHashMap<>();
+        this.result = compile(regEx, compiled, program);
+        boolean stars = false;
+        for(int[] instruction : program) stars |= instruction[0] == STAR_TO_TRIANGLE || instruction[0] == TRIANGLE_TO_STAR;
+        this.unreducedResult = stars ? compile(unreduced, compiled, program) : -1;
+        int n = program.size(), operandCount = 0;
+        for(int[] instruction : program) operandCount += instruction.length - 2;
+        this.opcode = new int[n];
+        this.argument = new int[n];
+        this.operandStart = new int[n + 1];
+        this.operands = new int[operandCount];
+        for(int i = 0; i < n; i++){
+            int[] instruction = program.get(i);
+            opcode[i] = instruction[0];
+            argument[i] = instruction[1];
+            operandStart[i + 1] = operandStart[i] + instruction.length - 2;
+            System.arraycopy(instruction, 2, operands, operandStart[i], instruction.length - 2);}
+        this.values = new double[n];
+        this.adjoints = new double[n];
+    }
+
+    // Adds the instructions of an expression after those of its parts. Returns the index of its value
+    private int compile(Expression expression, IdentityHashMap<Expression, Integer> compiled, ArrayList<int[]> program){
+        Integer done = compiled.get(expression);
+        if(done != null) return done;
+        int[] instruction;
+        if(expression instanceof EvaluableRegEx<?>.Constant constant){
+            // the expressions are all built by this regex, so a constant holds a T
+            @SuppressWarnings("unchecked") T content = (T) constant.content;
+            Integer ordinal = ordinalOf.get(content);
+            if(ordinal == null){
+                ordinal = weightOrder.size();
+                ordinalOf.put(content, ordinal);
+                weightOrder.add(content);}
+            instruction = new int[]{LOAD, ordinal};}
+        else if(expression instanceof Sum sum) instruction = withOperands(SUM, 0, sum.sum, compiled, program);
+        else if(expression instanceof Product product) instruction = withOperands(PRODUCT, 0, product.product, compiled, program);
+        else if(expression instanceof StarToTriangle star)
+            instruction = withOperands(STAR_TO_TRIANGLE, 0, List.of(star.a, star.b, star.opposite), compiled, program);
+        else if(expression instanceof TriangleToStar triangle)
+            instruction = withOperands(TRIANGLE_TO_STAR, 0, List.of(triangle.a, triangle.b, triangle.opposite), compiled, program);
+        else{
+            DirectSolve solve = (DirectSolve) expression;
+            solves.add(solve);
+            instruction = withOperands(SOLVE, solves.size() - 1, List.of(solve.resistors), compiled, program);}
+        program.add(instruction);
+        compiled.put(expression, program.size() - 1);
+        return program.size() - 1;
+    }
+
+    private int[] withOperands(int opcode, int argument, List<Expression> parts,
+                               IdentityHashMap<Expression, Integer> compiled, ArrayList<int[]> program){
+        int[] instruction = new int[parts.size() + 2];
+        instruction[0] = opcode;
+        instruction[1] = argument;
+        for(int i = 0; i < parts.size(); i++) instruction[i + 2] = compile(parts.get(i), compiled, program);
+        return instruction;
     }
 
+    /**
+     * @return the equivalent weight with the current weight of every transition
+     */
     public double evaluate(){
-        return regEx.evaluate();
+        return evaluate(weights());
+    }
+
+    /**
+     * Evaluates the equivalent weight for other weights without building the expression again. Evaluations must not
+     * run concurrently on the same EvaluableRegEx
+     * @param weights the weight of every transition, indexed by ordinalOf
+     */
+    public double evaluate(double[] weights){
+        this.answer = result;
+        boolean degenerate = run(weights, 0, result + 1) || Double.isNaN(values[result]);
+        if(degenerate && unreducedResult >= 0){
+            run(weights, result + 1, unreducedResult + 1);
+            this.answer = unreducedResult;}
+        return values[answer];
+    }
+
+    // Evaluates the instructions from first to last - 1. Returns true if a star had no triangle for its weights
+    private boolean run(double[] weights, int first, int last){
+        double[] values = this.values;
+        boolean degenerate = false;
+        for(int i = first; i < last; i++){
+            int from = operandStart[i], to = operandStart[i + 1];
+            double value;
+            switch(opcode[i]){
+                case LOAD -> value = weights[argument[i]];
+                case SUM -> {
+                    double sum = 0;
+                    for(int p = from; p < to; p++) sum += 1 / values[operands[p]];
+                    value = 1 / sum;}
+                case PRODUCT -> {
+                    double sum = 0;
+                    for(int p = from; p < to; p++) sum += values[operands[p]];
+                    value = sum;}
+                // (a * b + b * c + c * a) / c. If c and a are 0, a * b / c is a limit that depends on how both went to 0,
+                // which only the other sides of the triangle fix, so the unreduced network is solved instead
+                case STAR_TO_TRIANGLE -> {
+                    double a = values[operands[from]], b = values[operands[from + 1]], c = values[operands[from + 2]];
+                    double product = a * b;
+                    degenerate |= c == 0 && product == 0;
+                    value = a + b + (product == 0 ? 0 : product / c);}
+                // a * b / (a + b + c)
+                case TRIANGLE_TO_STAR -> {
+                    double a = values[operands[from]], b = values[operands[from + 1]], product = a * b;
+                    value = product == 0 ? 0 : product / (a + b + values[operands[from + 2]]);}
+                default -> {
+                    DirectSolve solve = solves.get(argument[i]);
+                    for(int p = from; p < to; p++) solve.weight[p - from] = values[operands[p]];
+                    value = solve.solve();}
+            }
+            values[i] = value;
+        }
+        return degenerate;
+    }
+
+    /**
+     * @return the derivative of the equivalent weight by the current weight of every transition in the expression
+     */
+    public HashMap<T, Double> gradient(){
+        double[] gradient = gradient(weights());
+        HashMap<T, Double> byTransition = new HashMap<>();
+        for(int i = 0; i < gradient.length; i++) byTransition.put(weightOrder.get(i), gradient[i]);
+        return byTransition;
+    }
+
+    /**
+     * Differentiates the equivalent weight by every weight at once. The program is evaluated forwards and then walked
+     * backwards, where every instruction passes the derivative of the result by its own value on to its operands, so
+     * the whole gradient costs about as much as one more evaluation. Must not run concurrently with evaluate
+     * @param weights the weight of every transition, indexed by ordinalOf
+     * @return the derivative of the equivalent weight by every weight, indexed by ordinalOf
+     */
+    public double[] gradient(double[] weights){
+        evaluate(weights);
+        double[] values = this.values, adjoints = this.adjoints;
+        double[] gradient = new double[weightOrder.size()];
+        Arrays.fill(adjoints, 0);
+        adjoints[answer] = 1;
+        for(int i = answer; i >= 0; i--){
+            double adjoint = adjoints[i];
+            if(adjoint == 0) continue;
+            int from = operandStart[i], to = operandStart[i + 1];
+            switch(opcode[i]){
+                case LOAD -> gradient[argument[i]] += adjoint;
+                // d / d x_k of 1 / sum(1 / x) is (value / x_k)^2, unless a term of 0 short circuits all the others
+                case SUM -> {
+                    int zeros = 0, zero = -1;
+                    for(int p = from; p < to; p++)
+                        if(values[operands[p]] == 0){
+                            zeros++;
+                            zero = operands[p];}
+                    if(zeros == 1) adjoints[zero] += adjoint;
+                    if(zeros > 0) continue;
+                    double value = values[i];
+                    for(int p = from; p < to; p++){
+                        double x = values[operands[p]];
+                        if(!Double.isInfinite(x)) adjoints[operands[p]] += adjoint * (value / x) * (value / x);}}
+                case PRODUCT -> {
+                    for(int p = from; p < to; p++) adjoints[operands[p]] += adjoint;}
+                case STAR_TO_TRIANGLE -> {
+                    double a = values[operands[from]], b = values[operands[from + 1]], c = values[operands[from + 2]];
+                    // with c at 0 and a and b not, the side is open and carries no flow. Otherwise evaluate went to
+                    // the unreduced network and this instruction is not on the way
+                    if(c == 0) continue;
+                    adjoints[operands[from]] += adjoint * (1 + b / c);
+                    adjoints[operands[from + 1]] += adjoint * (1 + a / c);
+                    adjoints[operands[from + 2]] -= adjoint * a * b / (c * c);}
+                case TRIANGLE_TO_STAR -> {
+                    double a = values[operands[from]], b = values[operands[from + 1]], c = values[operands[from + 2]];
+                    double sum = a + b + c;
+                    if(sum == 0 || Double.isInfinite(sum)) continue;
+                    adjoints[operands[from]] += adjoint * b * (b + c) / (sum * sum);
+                    adjoints[operands[from + 1]] += adjoint * a * (a + c) / (sum * sum);
+                    adjoints[operands[from + 2]] -= adjoint * a * b / (sum * sum);}
+                default -> {
+                    DirectSolve solve = solves.get(argument[i]);
+                    for(int p = from; p < to; p++) adjoints[operands[p]] += adjoint * solve.derivative(p - from);}
+            }
+        }
+        return gradient;
+    }
+
+    /**
+     * @return the current weight of every transition, indexed by ordinalOf
+     */
+    public double[] weights(){
+        double[] weights = new double[weightOrder.size()];
+        for(int i = 0; i < weights.length; i++) weights[i] = getValue.apply(weightOrder.get(i));
+        return weights;
+    }
+
+    /**
+     * @return the index of the weight of a transition in the weights given to evaluate, or -1 if it is not used
+     */
+    public int ordinalOf(T transition){
+        return ordinalOf.getOrDefault(transition, -1);
     }
 
     @Override
@@ -152,70 +542,117 @@ public class EvaluableRegEx<T>{
     }
 
     private Expression build(LADFA<T> LADFA){
-        LADFA<Expression> c = reduceAndTransmute(LADFA);
-        ArrayList<State<Expression>> states = c.getStates();
-        while(c.getStates().size() > 2 || c.getStates().get(c.getStart()[0]).size() > 1){
-            reduceParallel(states);
-            reduceSeries(states);}
-        return c.getStates().getFirst().transitionsBetween(c.getStates().getLast()).getFirst();
+        int start = LADFA.getStates().get(LADFA.getStart()[0]).getStateNumber();
+        int end = LADFA.getStates().get(LADFA.getFinal()[0]).getStateNumber();
+        if(start == end) return sum(new ArrayList<>());
+        Network network = toNetwork(LADFA);
+        network.addState(start);
+        network.addState(end);
+        removeUnreachable(network, start);
+        this.unreduced = new DirectSolve(network, start, end);
+        HashSet<Integer> stars = new HashSet<>();
+        int triangles = network.states().size();
+        while(reduce(network, start, end, stars) || (triangles-- > 0 && triangleToStar(network, start, end, stars)));
+        if(network.states().size() == 2){
+            Expression between = network.between(start, end);
+            return between == null ? new DirectSolve(network, start, end) : between;}
+        return new DirectSolve(network, start, end);
     }
 
-
     private Sum sum(ArrayList<T> ts){
         ArrayList<Expression> terms = new ArrayList<>();
-        for(T t : ts) terms.add(new Constant(t, this.getValue));
+        for(T t : ts) terms.add(new Constant(t));
         return new Sum(terms);
     }
 
-    // Transmutes a CNFA of type T to one of type Expression and unifies all links between two nodes to one
-    // <0,a,1>, <0,b,1>, <0,c,2> -> <0,a+b,1>, <0,c,2>
-    private LADFA<Expression> reduceAndTransmute(LADFA<T> fa) {
-        ArrayList<State<Expression>> newStates = new ArrayList<>();
-        for(State<T> oldState : fa.getStates()) newStates.add(new State<Expression>(oldState.getStateNumber()));
-        for(State<T> oldState : fa.getStates()){
-            for(State<T> nextState : oldState.nextStates()){
-                newStates.get(oldState.getStateNumber()).
-                        addTransition(sum(oldState.transitionsBetween(nextState)), newStates.get(nextState.getStateNumber()));
-            }
+    // Unifies all transitions between two states, in either direction, to one sum
+    // <0,a,1>, <0,b,1>, <1,a,0>, <0,c,2> -> {0,1}: a||b, {0,2}: c
+    private Network toNetwork(LADFA<T> fa){
+        LinkedHashMap<List<Integer>, LinkedHashSet<T>> between = new LinkedHashMap<>();
+        for(State<T> state : fa.getStates())
+            for(State<T> next : state.nextStates()){
+                int a = state.getStateNumber(), b = next.getStateNumber();
+                if(a == b) continue;
+                between.computeIfAbsent(List.of(Math.min(a, b), Math.max(a, b)), k -> new LinkedHashSet<>())
+                        .addAll(state.transitionsBetween(next));}
+        Network network = new Network();
+        for(List<Integer> pair : between.keySet())
+            network.add(pair.get(0), pair.get(1), sum(new ArrayList<>(between.get(pair))));
+        return network;
+    }
+
+    // Removes one state by the first of the steps that applies to it. Returns false if no step applies to any state
+    private static boolean reduce(Network network, int start, int end, HashSet<Integer> stars){
+        for(int state : network.states()){
+            if(state == start || state == end) continue;
+            List<Integer> next = network.neighbours(state);
+            if(next.size() <= 1){
+                network.removeState(state);
+                return true;}
+            if(next.size() == 2){
+                Product series = new Product();
+                series.add(network.between(state, next.get(0)));
+                series.add(network.between(state, next.get(1)));
+                network.removeState(state);
+                network.add(next.get(0), next.get(1), series);
+                return true;}
         }
-        return new LADFA<Expression>(newStates, fa.getStart()[0], fa.getFinal()[0]);
-    }
-
-    // If a state has several transitions to the same state it combines them into a sum
-    private static void reduceParallel(ArrayList<State<Expression>> states){
-        for(State<Expression> state : states){
-            HashMap<State<Expression>, HashSet<Expression>> tMap = new HashMap<>();
-            HashMap<Expression, State<Expression>> stateTransitions = state.getTransitions();
-            for(Expression expression : stateTransitions.keySet()){
-                State<Expression> nextState = stateTransitions.get(expression);
-                HashSet<Expression> transitions = tMap.getOrDefault(nextState, new HashSet<>());
-                transitions.add(expression);
-                tMap.put(nextState, transitions);}
-            if(state.getTransitions().size() == tMap.size()) continue;
-            state.clear();
-            for(State<Expression> next : tMap.keySet()){
-                Sum sum = new Sum();
-                for(Expression expression : tMap.get(next)) sum.add(expression);
-                state.addTransition(sum, next);}}
-    }
-
-    // if a State has one incoming and one outgoing, it removes that state and adds combined transition to previous state
-    private static void reduceSeries(ArrayList<State<Expression>> states){
-        ArrayList<State<Expression>> toRemove = new ArrayList<>();
-        for(State<Expression> state : states){
-            if(toRemove.contains(state)) continue;
-            for(State<Expression> next : state.nextStates()){
-                if(next.previousStates().size() == 1 && next.nextStates().size() == 1){
-                    State<Expression> nextOfNext = next.nextStates().iterator().next();
-                    Product newTransition = new Product();
-                    newTransition.add(state.transitionsBetween(next).getFirst());
-                    newTransition.add(next.transitionsBetween(nextOfNext).getFirst());
-                    state.addTransition(newTransition, nextOfNext);
-                    state.removeTransition(state.transitionsBetween(next).getFirst());
-                    next.removeTransition(next.transitionsBetween(nextOfNext).getFirst());
-                    toRemove.add(next);}}}
-        states.removeAll(toRemove);
+        // the center of a star made by triangleToStar would only turn back into the triangle
+        for(int state : network.states()){
+            if(state == start || state == end || stars.contains(state)) continue;
+            List<Integer> next = network.neighbours(state);
+            if(next.size() != 3) continue;
+            Expression a = network.between(state, next.get(0));
+            Expression b = network.between(state, next.get(1));
+            Expression c = network.between(state, next.get(2));
+            network.removeState(state);
+            network.add(next.get(0), next.get(1), new StarToTriangle(a, b, c));
+            network.add(next.get(1), next.get(2), new StarToTriangle(b, c, a));
+            network.add(next.get(2), next.get(0), new StarToTriangle(c, a, b));
+            return true;
+        }
+        return false;
+    }
+
+    // States that can not be reached from the start carry no flow of it
+    private static void removeUnreachable(Network network, int start){
+        HashSet<Integer> reached = new HashSet<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        reached.add(start);
+        queue.add(start);
+        while(!queue.isEmpty())
+            for(int next : network.neighbours(queue.poll()))
+                if(reached.add(next)) queue.add(next);
+        for(int state : network.states()) if(!reached.contains(state)) network.removeState(state);
     }
 
+    // Replaces a triangle around the state with the fewest neighbours by a star. Returns false if there is none
+    private static boolean triangleToStar(Network network, int start, int end, HashSet<Integer> stars){
+        int best = -1, x = -1, y = -1;
+        for(int state : network.states()){
+            if(state == start || state == end || stars.contains(state)) continue;
+            List<Integer> next = network.neighbours(state);
+            if(best >= 0 && next.size() >= network.neighbours(best).size()) continue;
+            for(int i = 0; i < next.size(); i++)
+                for(int j = i + 1; j < next.size(); j++)
+                    if(network.between(next.get(i), next.get(j)) != null){
+                        best = state;
+                        x = next.get(i);
+                        y = next.get(j);
+                        i = next.size();
+                        break;}
+        }
+        if(best < 0) return false;
+        Expression toX = network.between(best, x), toY = network.between(best, y), xToY = network.between(x, y);
+        network.remove(best, x);
+        network.remove(best, y);
+        network.remove(x, y);
+        int center = network.newState();
+        stars.add(center);
+        network.add(center, best, new TriangleToStar(toX, toY, xToY));
+        network.add(center, x, new TriangleToStar(toX, xToY, toY));
+        network.add(center, y, new TriangleToStar(toY, xToY, toX));
+        return true;
+    }
 
 }
@@ -1,7 +1,6 @@
 package FlowNetwork;
 
-import Jama.Matrix;
-
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -10,10 +9,10 @@ import java.util.HashSet;
     /*
     Represents a discrete flow through a graph. Main functionality is the ability to calculate the flow through
     a specific edge of the graph. To instantiate a Flow you need the edge which is the source of the flow
-    and the Node to which the flow flows.
+    and the vertex to which the flow flows, both as ordinals of the CompactGraph of the network.
 
-    When instantiated the GraphParser parses the Graph into a flow in the form of a list of all valid paths and
-    a transition graph of how a discrete flow element can move from Node to Node.
+    When instantiated the GraphParser parses the Graph into a transition graph of how a discrete flow element can move
+    from Node to Node. The valid paths themselves are not stored, but enumerated again by a PathEnumerator one at a time.
 
     To calculate the flow through each it uses the loop rule:
         The sum of all (Edge weight * flow through Edge) in a path must equal the pressure.
@@ -21,13 +20,13 @@ import java.util.HashSet;
     it must also utilize the junction rule:
         The sum of all incoming flows in a node must equal the outgoing flows.
 
-    For every valid path the GraphParser found we can generate the loop equations and using the transition graph we
-    can generate the junction equations. Then using the Jama library it solves the system of equations by Gaussian
-    elimination and stores the general flows in the map flowsThroughEdge. By then setting a pressure, one can calculate
+    For every valid path the PathEnumerator finds we can generate the loop equations and using the transition graph we
+    can generate the junction equations. Then it solves the system of equations by a sparse LDL^T factorization of its
+    normal equations and stores the general flows in the map flowsThroughEdge. By then setting a pressure, one can calculate
     the specific flow through the edge by multiplying the general flow with the pressure.
 
-    The direction of the flow is also considered. If the flow through an edge passes in the direction Edge.in -> Edge.out
-    the flow is set to positive, otherwise negative.
+    The direction of the flow is also considered. If the flow through an edge passes in the direction from -> to of the
+    edge the flow is set to positive, otherwise negative.
 
     The GraphParser is abstracted into its own class purely for readabilities’ sake.
      */
@@ -37,81 +36,72 @@ import java.util.HashSet;
  * @since 4.12.2024
  */
 
-public class Flow {
+public class Flow extends SourceFlow {
 
     private static class GraphParser {
         /*
-        This class parses a graph into a tree structure. And extracts all possible paths from root to leaf, as well as
-        a transition graph that describes the direction of how a flow flows through the graph.
+        This class parses a graph into a tree structure, and extracts a transition graph from it that describes the
+        direction of how a flow flows through the graph.
 
-        When instantiated as TreeNode(Edge source, Node direction) it "removes" the source edge from the graph and calls
-        the Node that the source Edge connects the direction Node to "finalNode". A TreeNode, root, is then created from
-        the direction Node. Root then spawns children by creating child treeNodes from the Nodes that the root graph node
-        is connected to. The children then also grow with the constraint that they cannot spawn a child that it has as
+        When instantiated as TreeNode(int source, int direction) it "removes" the source edge from the graph and calls
+        the vertex that the source edge connects the direction vertex to "finalNode". A TreeNode, root, is then created
+        from the direction vertex. Root then spawns children by creating child treeNodes from the vertices that the root
+        graph vertex is connected to. The children then also grow with the constraint that they cannot spawn a child that it has as
         an ancestor.
 
-        Thus, all acyclic paths through the graph are traversed. If a child has a path to the finalNode the parent adds
-        the child's path(to the finalNode) to its own paths. The root shall then contain all valid acyclic paths to the
-        finalNode.
+        Thus, all acyclic paths through the graph are traversed. A TreeNode only remembers whether it has a path to the
+        finalNode, so only the TreeNodes from the root to the current one are alive at any time.
 
         Simultaneously states corresponding to all visited graph Nodes are created. If a TreeNode has a child with a
         valid path to finalNode it adds the transition self.node -> child.node to the state corresponding to its own
         graph Node.
          */
         private class TreeNode{
-            State<Edge> state;
-            Node vertex;
+            State<Integer> state;
+            int vertex;
             TreeNode parent;
             boolean hasPath = false;
-            ArrayList<ArrayList<Edge>> paths;
 
             //Constructs root
-            private TreeNode(Edge source, Node direction){
+            private TreeNode(int source, int direction){
                 this.vertex = direction;
                 this.parent = null;
-                this.state = new State<Edge>(nextStateNumber++);
-                this.paths = new ArrayList<>();
+                this.state = new State<Integer>(nextStateNumber++);
                 vertexToState.put(vertex, this.state);
-                for(Edge transition : direction.getEdges()){
+                for(int i = offset.get(direction); i < offset.get(direction + 1); i++){
+                    int transition = incident.get(i);
                     if(transition == source) continue;
-                    Node nextVertex = direction.vertexThrough(transition);
+                    int nextVertex = graph.other(transition, direction);
                     TreeNode child = new TreeNode(this, nextVertex);
                     if(!child.hasPath) continue;
                     allEdges.add(transition);
-                    directionOf.put(transition, transition.out == nextVertex ? 1 : -1);
                     this.state.addTransition(transition, child.state);
-                    for(ArrayList<Edge> path : child.paths) path.addFirst(transition);
-                    this.paths.addAll(child.paths);
                     this.hasPath = true;
                 }
             }
 
             //Constructs child
-            private TreeNode(TreeNode parent, Node vertex){
+            private TreeNode(TreeNode parent, int vertex){
                 this.vertex = vertex;
                 this.parent = parent;
-                this.state = vertexToState.getOrDefault(this.vertex, new State<Edge>(nextStateNumber++));
+                this.state = vertexToState.getOrDefault(this.vertex, new State<Integer>(nextStateNumber++));
                 vertexToState.put(this.vertex, this.state);
-                this.paths = new ArrayList<>();
                 if(vertex == finalNode){
-                    this.paths.add(new ArrayList<>());
                     this.hasPath = true;
                     return;
                 }
-                for(Edge transition : vertex.getEdges()){
-                    Node nextVertex = vertex.vertexThrough(transition);
+                for(int i = offset.get(vertex); i < offset.get(vertex + 1); i++){
+                    int transition = incident.get(i);
+                    int nextVertex = graph.other(transition, vertex);
                     if(inAncestors(nextVertex)) continue;
                     TreeNode child = new TreeNode(this, nextVertex);
                     if(!child.hasPath) continue;
                     this.state.addTransition(transition, child.state);
                     allEdges.add(transition);
-                    directionOf.put(transition, transition.out == nextVertex ? 1 : -1);
-                    for(ArrayList<Edge> path : child.paths) path.addFirst(transition);
-                    this.paths.addAll(child.paths);
                     this.hasPath = true;
                 }
             }
-            private boolean inAncestors(Node vertex){
+            private boolean inAncestors(int vertex){
                 if(vertex == this.vertex) return true;
                 if(this.parent == null) return false;
                 return this.parent.inAncestors(vertex);
@@ -119,128 +109,153 @@ public class Flow {
         }
 
         private int nextStateNumber = 0;
-        private final Node finalNode;
-        private final HashMap<Node, State<Edge>> vertexToState;
-        private final ArrayList<State<Edge>> states;
-        private final HashSet<Edge> allEdges;
-        private final HashMap<Edge, Integer> directionOf;
-        private final ArrayList<ArrayList<Edge>> allPaths;
-
-        private GraphParser(Edge source, Node direction) {
+        private final CompactGraph graph;
+        private final IntBuffer offset, incident;
+        private final int finalNode;
+        private final HashMap<Integer, State<Integer>> vertexToState;
+        private final ArrayList<State<Integer>> states;
+        private final HashSet<Integer> allEdges;
+
+        private GraphParser(CompactGraph graph, int source, int direction) {
+            this.graph = graph;
+            this.offset = graph.offsets();
+            this.incident = graph.incidents();
             this.vertexToState = new HashMap<>();
             this.allEdges = new HashSet<>();
-            this.directionOf = new HashMap<>();
-            this.finalNode = direction.vertexThrough(source);
+            this.finalNode = graph.other(source, direction);
             TreeNode root = new TreeNode(source, direction);
             this.states = new ArrayList<>(vertexToState.values());
-            State<Edge> rootState = root.state;
+            State<Integer> rootState = root.state;
             states.remove(rootState);
             states.addFirst(rootState);
-            State<Edge> finalState = vertexToState.get(finalNode);
+            State<Integer> finalState = vertexToState.get(finalNode);
             states.remove(finalState);
             states.add(finalState);
             for(int i = 0; i < states.size(); i++){
                 states.get(i).setStateNumber(i);
             }
-            this.allPaths = root.paths;
         }
-        private LADFA<Edge> toAutomata(){
-            return new LADFA<Edge>(states, 0, vertexToState.get(finalNode).getStateNumber());
+        private LADFA<Integer> toAutomata(){
+            return new LADFA<Integer>(states, 0, vertexToState.get(finalNode).getStateNumber());
         }
     }
 
-    private final HashSet<Edge> edgesInFlow;
-    private final HashMap<Edge, Integer> directionOf;
-    private final LADFA<Edge> automata;
-    private final ArrayList<ArrayList<Edge>> paths;
-    private final HashMap<Edge, Double> flowThroughEdge;
+    private final HashSet<Integer> edgesInFlow;
+    private final LADFA<Integer> automata;
+    private final HashMap<Integer, Double> flowThroughEdge;
     private double pressure;
+    private final EvaluableRegEx<Integer> equivalentWeight;
     private final double equivalentResistance;
 
-    protected Flow(Edge source, Node direction){
-        GraphParser factory = new GraphParser(source, direction);
+    protected Flow(CompactGraph graph, int source, int direction){
+        GraphParser factory = new GraphParser(graph, source, direction);
         this.automata = factory.toAutomata();
-        this.paths = factory.allPaths;
         this.edgesInFlow = factory.allEdges;
-        this.directionOf = factory.directionOf;
         this.flowThroughEdge = new HashMap<>();
-        this.calculateDiscreteCurrents();
+        this.calculateDiscreteCurrents(graph, source, direction, new PathEnumerator(graph, source, direction));
         this.pressure = 1;
         //adding the source
         this.edgesInFlow.add(source);
         double sourceFlow = 0;
-        State<Edge> sourceState = automata.getStates().get(automata.getStart()[0]);
-        for(State<Edge> nextState : sourceState.nextStates())
-            for(Edge transition : sourceState.transitionsBetween(nextState))
+        State<Integer> sourceState = automata.getStates().get(automata.getStart()[0]);
+        for(State<Integer> nextState : sourceState.nextStates())
+            for(Integer transition : sourceState.transitionsBetween(nextState))
                 sourceFlow += flowThroughEdge.get(transition);
         flowThroughEdge.put(source, sourceFlow);
 
-        this.equivalentResistance = new EvaluableRegEx<Edge>(automata, e -> e.weight).evaluate();
+        this.equivalentWeight = new EvaluableRegEx<>(automata, graph::weight);
+        this.equivalentResistance = equivalentWeight.evaluate();
     }
 
+    @Override
     protected void setPressure(double pressure){
         this.pressure = pressure;
     }
 
+    @Override
     protected double getEquivalentResistance(){
         return equivalentResistance;
     }
 
-    // Kirchhoff junction rule: flow in = out, for every junction
-    private HashMap<HashSet<Edge>, HashSet<Edge>> junctionEquations(){
-        HashMap<HashSet<Edge>, HashSet<Edge>> equations = new HashMap<>();
-        for(State<Edge> state : this.automata.getStates()){
-            if(state.previousStates().isEmpty() || state.nextStates().isEmpty()) continue;
-            HashSet<Edge> previous = new HashSet<>(state.previousStates().keySet());
-            HashSet<Edge> next = new HashSet<>(state.getTransitions().keySet());
-            equations.put(previous, next);
-        }
-        return equations;
+    // the expression of the equivalent resistance differentiated, where the edges it does not use have no influence
+    @Override
+    protected HashMap<Integer, Double> getEquivalentResistanceGradient(){
+        HashMap<Integer, Double> gradient = new HashMap<>();
+        for(int e : edgesInFlow) gradient.put(e, 0.0);
+        gradient.putAll(equivalentWeight.gradient());
+        return gradient;
+    }
+
+    protected LADFA<Integer> getAutomaton(){
+        return automata;
     }
 
-    // Creates a system of equations using loop rules and junction rules
-    // Using the Jama library it then solves the equations and stores the
-    // flow through every resistance in this.flowsThrough
-    private void calculateDiscreteCurrents(){
-        HashMap<Edge, Integer> matrixPosition = new HashMap<>();
-        for(Edge e : edgesInFlow) matrixPosition.put(e, matrixPosition.size());
+    // Creates a system of equations A x = b using loop rules and junction rules, where x is the flow through every edge
+    // from its start to its end. A path can cross an edge in either direction, as the paths around a bridge cross it, so
+    // the loop rule of a path subtracts the edges it crosses backwards, and the junction rule of a vertex sums the
+    // edges that end there minus the edges that start there. The paths and the junctions between the ends of the source
+    // then determine every flow, but there are more equations than flows, so it solves the normal equations
+    // A^T A x = A^T b. Every equation only touches the edges of one path or junction, so A^T A is assembled sparsely and
+    // factorized by SparseLDL, and each path is added as soon as it is enumerated.
+    // The flow through every resistance is stored in this.flowsThrough
+    private void calculateDiscreteCurrents(CompactGraph graph, int source, int direction, PathEnumerator paths){
+        HashMap<Integer, Integer> matrixPosition = new HashMap<>();
+        for(int e : edgesInFlow) matrixPosition.put(e, matrixPosition.size());
         int variableAmount = edgesInFlow.size();
-        ArrayList<double[]> leftHandSide = new ArrayList<>();
-        ArrayList<double[]> rightHandSide = new ArrayList<>();
-        //Add all loop rule equations
-        for(ArrayList<Edge> flow : paths){
-            double[] equation = new double[variableAmount];
-            Arrays.fill(equation, 0);
-            for(Edge e : flow)
-                equation[matrixPosition.get(e)] = e.weight;
-            leftHandSide.add(equation);
-            rightHandSide.add(new double[]{1});
-        }
-        //Add all junction rule equations
-       HashMap<HashSet<Edge>, HashSet<Edge>> junctionEquations = junctionEquations();
-        for(HashSet<Edge> incoming : junctionEquations.keySet()){
-            double[] equation = new double[variableAmount];
-            Arrays.fill(equation, 0);
-            for(Edge e : incoming) equation[matrixPosition.get(e)] = 1;
-            for(Edge e : junctionEquations.get(incoming)) equation[matrixPosition.get(e)] = -1;
-            leftHandSide.add(equation);
-            rightHandSide.add(new double[]{0});
+        SparseMatrix.Assembly normal = new SparseMatrix.Assembly(variableAmount);
+        double[] rightHandSide = new double[variableAmount];
+        //Add all loop rule equations, every path starts at the direction vertex
+        while(paths.hasNext()){
+            int[] flow = paths.next();
+            int[] columns = new int[flow.length];
+            double[] equation = new double[flow.length];
+            int vertex = direction;
+            for(int i = 0; i < columns.length; i++){
+                columns[i] = matrixPosition.get(flow[i]);
+                equation[i] = graph.from(flow[i]) == vertex ? graph.weight(flow[i]) : -graph.weight(flow[i]);
+                vertex = graph.other(flow[i], vertex);}
+            addEquation(normal, rightHandSide, columns, equation, 1);
         }
-        // create and solve matrix
-        Matrix lhs = new Matrix(leftHandSide.toArray(new double[leftHandSide.size()][]));
-        Matrix rhs = new Matrix(rightHandSide.toArray(new double[rightHandSide.size()][]));
-        Matrix currents = lhs.solve(rhs);
-        for(Edge e : edgesInFlow){
-            double flow = currents.get(matrixPosition.get(e), 0) * (this.directionOf.get(e));
-            this.flowThroughEdge.put(e, flow);
+        //Add all junction rule equations, for every vertex of the flow besides the ends of the source
+        int finalNode = graph.other(source, direction);
+        HashSet<Integer> junctions = new HashSet<>();
+        for(int e : edgesInFlow){
+            junctions.add(graph.from(e));
+            junctions.add(graph.to(e));}
+        junctions.remove(direction);
+        junctions.remove(finalNode);
+        IntBuffer offset = graph.offsets(), incident = graph.incidents();
+        for(int junction : junctions){
+            int[] columns = new int[offset.get(junction + 1) - offset.get(junction)];
+            double[] equation = new double[columns.length];
+            int count = 0;
+            for(int i = offset.get(junction); i < offset.get(junction + 1); i++){
+                int e = incident.get(i);
+                if(!edgesInFlow.contains(e)) continue;
+                columns[count] = matrixPosition.get(e);
+                equation[count++] = graph.to(e) == junction ? 1 : -1;}
+            addEquation(normal, rightHandSide, Arrays.copyOf(columns, count), Arrays.copyOf(equation, count), 0);
         }
+        // factorize and solve
+        new SparseLDL(normal.toMatrix()).solve(rightHandSide);
+        for(int e : edgesInFlow) this.flowThroughEdge.put(e, rightHandSide[matrixPosition.get(e)]);
+    }
+
+    // Adds the row a of A, with b as its right hand side, to A^T A and A^T b
+    private static void addEquation(SparseMatrix.Assembly normal, double[] rightHandSide, int[] columns, double[] a, double b){
+        for(int i = 0; i < columns.length; i++){
+            rightHandSide[columns[i]] += a[i] * b;
+            for(int j = 0; j < columns.length; j++)
+                normal.add(columns[i], columns[j], a[i] * a[j]);}
     }
 
-    public boolean contains(Edge e){
+    @Override
+    public boolean contains(int e){
         return this.edgesInFlow.contains(e);
     }
 
-    public double flowThrough(Edge e){
+    @Override
+    public double flowThrough(int e){
         return this.flowThroughEdge.get(e) * pressure;
     }
 
@@ -1,50 +1,175 @@
 package FlowNetwork;
 
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.SplittableRandom;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FlowNetwork<T>{
 
-    private final HashMap<Edge, T> toObject;
-    private final HashMap<T, Edge> toResistor;
-    private final HashMap<Vertex<T>, Node> toNode;
-    private final HashMap<T, Flow> flowSources;
+    /**
+     * How the flow of each pressure source is solved
+     */
+    public enum Analysis {
+        /** Writes one loop equation for every acyclic path around the source. Exponential in the amount of paths */
+        PATHS,
+        /** Solves the potential of every vertex. Grows with the amount of vertices and edges */
+        NODAL
+    }
+
+    private static final int SAMPLE_CHUNK = 16;
+
+    private final CompactGraph graph;
+    private final Ordinals<Vertex<T>> vertices;
+    private final Ordinals<T> edges;
+    private final HashMap<T, SourceFlow> flowSources;
+    private final HashMap<T, Integer> directionOf;
+    private final HashMap<T, Double> pressureOf;
+    private final Function<T, Double> weightOf;
+    private final Analysis analysis;
+    private final SolverOptions solverOptions;
+    private final Map<Long, SparseLDL> factorizations;
+    private Blocks blocks;
+    // the flows of the current sources and weights, or null until they are asked for again
+    private FlowResult<T> flowResult;
+    private Potentials<T> potentials;
 
     public FlowNetwork(Set<? extends Vertex<T>> graphUnknownType, Function<T, Double> resistanceOfObject){
+        this(graphUnknownType, resistanceOfObject, Analysis.PATHS);
+    }
+
+    public FlowNetwork(Set<? extends Vertex<T>> graphUnknownType, Function<T, Double> resistanceOfObject, Analysis analysis){
+        this(graphUnknownType, resistanceOfObject, analysis, SolverOptions.direct());
+    }
+
+    /**
+     * Creates a network solved by nodal analysis
+     * @param solverOptions how the linear systems of the nodal analysis are solved
+     */
+    public FlowNetwork(Set<? extends Vertex<T>> graphUnknownType, Function<T, Double> resistanceOfObject, SolverOptions solverOptions){
+        this(graphUnknownType, resistanceOfObject, Analysis.NODAL, solverOptions);
+    }
+
+    private FlowNetwork(Set<? extends Vertex<T>> graphUnknownType, Function<T, Double> resistanceOfObject,
+                        Analysis analysis, SolverOptions solverOptions){
         Set<Vertex<T>> graphKnownType = (Set<Vertex<T>>) graphUnknownType;
-        this.toObject = new HashMap<>();
-        this.toResistor = new HashMap<>();
-        this.toNode = new HashMap<>();
-        this.flowSources = new HashMap<>();
-        cloneGraph(graphKnownType, resistanceOfObject);
-    }
-
-    //TODO: optimize cloning
-    private void cloneGraph(Set<Vertex<T>> graph, Function<T, Double> function){
-        HashSet<T> allEdges = new HashSet<>();
-        for(Vertex<T> v : graph){ //creates new Junctions and collects all edges<T>
-            toNode.put(v, new Node());
-            allEdges.addAll(v.getEdges());
-        }
-        for(T edge : allEdges){
-            Edge newEdge = new Edge(function.apply(edge));
-            toObject.put(newEdge, edge);
-            toResistor.put(edge, newEdge);
-        }
-        for(Vertex<T> v : graph) //Adds new edges to new vertices and connects them
+        this.weightOf = resistanceOfObject;
+        this.analysis = analysis;
+        this.solverOptions = solverOptions;
+        this.vertices = new Ordinals<>(graphKnownType.size());
+        this.edges = new Ordinals<>(graphKnownType.size());
+        this.flowSources = new LinkedHashMap<>();
+        this.directionOf = new HashMap<>();
+        this.pressureOf = new HashMap<>();
+        this.factorizations = new ConcurrentHashMap<>();
+        this.graph = cloneGraph(graphKnownType, resistanceOfObject);
+    }
+
+    // a network on a graph that is already compact, whose edges and vertices are their own ordinals
+    private FlowNetwork(CompactGraph graph, Ordinals<Vertex<T>> vertices, Ordinals<T> edges, Analysis analysis,
+                        SolverOptions solverOptions, Map<Long, SparseLDL> factorizations){
+        this.graph = graph;
+        this.vertices = vertices;
+        this.edges = edges;
+        this.weightOf = edge -> {throw new RuntimeException("This network has no weight function, the edge needs a weight!");};
+        this.analysis = analysis;
+        this.solverOptions = solverOptions;
+        this.flowSources = new LinkedHashMap<>();
+        this.directionOf = new HashMap<>();
+        this.pressureOf = new HashMap<>();
+        this.factorizations = new ConcurrentHashMap<>(factorizations);
+    }
+
+    // a network whose edges and vertices are the ordinals of a graph that was read without any objects
+    protected static FlowNetwork<Integer> ofGraph(CompactGraph graph, Analysis analysis, SolverOptions solverOptions,
+                                                  Map<Long, SparseLDL> factorizations){
+        return new FlowNetwork<>(graph, IdentityOrdinals.verticesOf(graph), IdentityOrdinals.edgesOf(graph), analysis,
+                solverOptions, factorizations);
+    }
+
+    /**
+     * Reads a network saved by save. The arrays of the graph are mapped from the file instead of read, so opening a
+     * network takes about as long as reading its header, and the pages of the file are only read when a solver first
+     * touches them. The first change of a weight or an edge copies the arrays into the storage of the SolverOptions.
+     * The edges of the network are the Integers edgeOrdinal gave them when the network was saved, and the vertices are
+     * given by vertexAt. The sources are solved again, with the saved factorizations if there are any.
+     * @param solverOptions how a network of nodal analysis is solved, which must be direct to use saved factorizations
+     */
+    public static FlowNetwork<Integer> load(Path path, SolverOptions solverOptions) throws IOException{
+        NetworkFile file = NetworkFile.read(path, solverOptions.storage);
+        FlowNetwork<Integer> network = ofGraph(file.graph, file.analysis, solverOptions, file.factorizations);
+        for(int i = 0; i < file.sourceEdges.length; i++)
+            network.setPressure(file.sourceEdges[i], file.pressures[i], network.vertexAt(file.sourceDirections[i]));
+        return network;
+    }
+
+    public static FlowNetwork<Integer> load(Path path) throws IOException{
+        return load(path, SolverOptions.direct());
+    }
+
+    /**
+     * Saves the graph and the sources of the network in the binary format of NetworkFile, from which load opens it again
+     * @param withFactorizations also save the factorizations of the systems of nodal analysis that are up to date, so
+     *                           that loading the network does not factorize them again
+     */
+    public void save(Path path, boolean withFactorizations) throws IOException{
+        int[] sourceEdges = new int[flowSources.size()], sourceDirections = new int[flowSources.size()];
+        double[] pressures = new double[flowSources.size()];
+        int i = 0;
+        for(T source : flowSources.keySet()){
+            sourceEdges[i] = edges.get(source);
+            sourceDirections[i] = directionOf.get(source);
+            pressures[i++] = pressureOf.get(source);}
+        HashMap<Long, SparseLDL> saved = new HashMap<>();
+        if(withFactorizations && blocks != null)
+            for(NodalSystem system : blocks.builtSystems())
+                if(system.factorization() != null) saved.put(system.fingerprint(), system.factorization());
+        new NetworkFile(analysis, graph, sourceEdges, sourceDirections, pressures, saved).write(path);
+    }
+
+    public void save(Path path) throws IOException{
+        save(path, false);
+    }
+
+    // The graph is decomposed into blocks when nodal analysis first needs them, so a loaded network opens at once
+    private Blocks blocks(){
+        if(blocks == null) this.blocks = new Blocks(graph, solverOptions, factorizations);
+        return blocks;
+    }
+
+    // Gives every vertex and edge a dense ordinal in one pass each. An edge goes from the first vertex it is found at
+    private CompactGraph cloneGraph(Set<Vertex<T>> graphVertices, Function<T, Double> function){
+        int degrees = 0;
+        for(Vertex<T> v : graphVertices){
+            vertices.add(v);
+            degrees += v.getEdges().size();}
+        CompactGraph graph = new CompactGraph(vertices.size(), degrees / 2 + 1, solverOptions.storage);
+        for(Vertex<T> v : graphVertices)
             for(T edge : v.getEdges()){
-                Edge resistor = toResistor.get(edge);
-                if(resistor.in == null){
-                    Node j1 = toNode.get(v);
-                    Node j2 = toNode.get(v.vertexThrough(edge));
-                    resistor.in = j1;
-                    resistor.out = j2;
-                    j1.add(resistor);
-                    j2.add(resistor);
-                }
+                if(edges.contains(edge)) continue;
+                int to = vertices.get(v.vertexThrough(edge));
+                if(to < 0) throw new RuntimeException("This vertex does not exist in network!");
+                edges.add(edge);
+                graph.addEdge(vertices.get(v), to, function.apply(edge));
             }
+        return graph;
     }
 
     /**
@@ -56,33 +181,741 @@ public class FlowNetwork<T>{
      */
     public double setPressure(T source, double pressure, Vertex<T> direction){
         if(flowSources.containsKey(source)) throw new RuntimeException("This edge is already pressure source!");
-        Edge pressureSource = toResistor.get(source);
-        Node directionNode = toNode.get(direction);
-        if(pressureSource == null) throw new RuntimeException("This edge does not exist in network!");
-        if(directionNode == null) throw new RuntimeException("This vertex does not exist in network!");
-        Flow flow = new Flow(pressureSource, directionNode);
-        flow.setPressure(pressure);
+        int pressureSource = edges.get(source);
+        int directionVertex = vertices.get(direction);
+        if(pressureSource < 0) throw new RuntimeException("This edge does not exist in network!");
+        if(directionVertex < 0) throw new RuntimeException("This vertex does not exist in network!");
+        SourceFlow flow = solveSource(pressureSource, pressure, directionVertex);
+        forgetResults();
         this.flowSources.put(source, flow);
+        this.directionOf.put(source, directionVertex);
+        this.pressureOf.put(source, pressure);
+        return flow.getEquivalentResistance();
+    }
+
+    private SourceFlow solveSource(int pressureSource, double pressure, int direction){
+        SourceFlow flow = analysis == Analysis.NODAL ?
+                blocks().systemOf(pressureSource).addSource(pressureSource, direction) : new Flow(graph, pressureSource, direction);
+        flow.setPressure(pressure);
+        return flow;
+    }
+
+    /**
+     * Changes the weight of an edge and updates the flows of all sources.
+     * In nodal analysis a change between two positive weights corrects the existing factorization instead of solving
+     * the network from the start, so repeated changes of a few edges stay cheap. A change to or from the weight 0
+     * changes the structure of the system of the block, which is then built again.
+     * @param edge      an edge of the graph
+     * @param newWeight the new weight of the edge
+     */
+    public void updateWeight(T edge, double newWeight){
+        int resistor = edges.get(edge);
+        if(resistor < 0) throw new RuntimeException("This edge does not exist in network!");
+        if(newWeight < 0) throw new RuntimeException("The weight of an edge can not be negative!");
+        double weight = graph.weight(resistor);
+        if(weight == newWeight) return;
+        forgetResults();
+        if(analysis == Analysis.PATHS){
+            graph.setWeight(resistor, newWeight);
+            solveAgain();
+            return;}
+        NodalSystem system = blocks().builtSystemOf(resistor);
+        if(system != null && weight != 0 && newWeight != 0) system.updateWeight(system.indexOf(resistor), newWeight);
+        else{
+            graph.setWeight(resistor, newWeight);
+            if(system != null) solveBlockAgain(blocks().blockOf(resistor));}
+    }
+
+    // decomposes the graph again and solves every source from the start
+    private void solveAgain(){
+        if(analysis == Analysis.NODAL){
+            this.blocks = new Blocks(graph, solverOptions, factorizations);
+            blocks.build(flowSources.keySet().stream().mapToInt(edges::get).toArray());}
+        for(T source : flowSources.keySet())
+            flowSources.put(source, solveSource(edges.get(source), pressureOf.get(source), directionOf.get(source)));
+    }
+
+    // builds the system of one block again and solves the sources in it, since no other source can reach the block
+    private void solveBlockAgain(int block){
+        blocks().forget(block);
+        for(T source : flowSources.keySet())
+            if(blocks().blockOf(edges.get(source)) == block)
+                flowSources.put(source, solveSource(edges.get(source), pressureOf.get(source), directionOf.get(source)));
+    }
+
+    /**
+     * Adds a vertex without any edges to the network. Its edges are added by addEdge
+     */
+    public void addVertex(Vertex<T> vertex){
+        if(vertices.contains(vertex)) throw new RuntimeException("This vertex already exists in network!");
+        vertices.add(vertex);
+        graph.addVertex();
+    }
+
+    /**
+     * Adds an edge between two vertices of the network, weighted by the function the network was created with.
+     * In nodal analysis an edge between two vertices of the same block joins that block. A resistor between two
+     * vertices that are already connected is added to the existing factorization of the block, any other edge builds
+     * the system of the block again. An edge between two blocks decomposes the graph again.
+     */
+    public void addEdge(T edge, Vertex<T> from, Vertex<T> to){
+        addEdge(edge, from, to, weightOf.apply(edge));
+    }
+
+    /**
+     * Adds an edge with the given weight, as a loaded network has no function to weigh its edges by. The edge of a
+     * loaded network must be the next ordinal, which is the amount of edges the network has ever had
+     * @see #addEdge(Object, Vertex, Vertex)
+     */
+    public void addEdge(T edge, Vertex<T> from, Vertex<T> to, double weight){
+        if(edges.contains(edge)) throw new RuntimeException("This edge already exists in network!");
+        int in = vertices.get(from), out = vertices.get(to);
+        if(in < 0 || out < 0) throw new RuntimeException("This vertex does not exist in network!");
+        edges.add(edge);
+        int resistor = graph.addEdge(in, out, weight);
+        forgetResults();
+        if(analysis == Analysis.PATHS){
+            solveAgain();
+            return;}
+        int block = blocks().commonBlock(in, out);
+        if(block < 0){
+            solveAgain();
+            return;}
+        blocks().add(resistor, block);
+        NodalSystem system = blocks().builtSystemOf(resistor);
+        if(system != null && !system.addEdge(resistor)) solveBlockAgain(block);
+    }
+
+    /**
+     * Removes an edge from the network. If the edge is a pressure source the source is removed too.
+     * In nodal analysis the edge is removed from the existing factorization of its block, unless it is a wire of weight 0
+     * that the system contracted or the removal splits the block, which builds the system of the block again.
+     */
+    public void removeEdge(T edge){
+        int resistor = edges.get(edge);
+        if(resistor < 0) throw new RuntimeException("This edge does not exist in network!");
+        forgetResults();
+        flowSources.remove(edge);
+        directionOf.remove(edge);
+        pressureOf.remove(edge);
+        NodalSystem system = analysis == Analysis.NODAL ? blocks().builtSystemOf(resistor) : null;
+        int block = analysis == Analysis.NODAL ? blocks().blockOf(resistor) : -1;
+        boolean removed = system == null || system.removeEdge(resistor);
+        if(block >= 0) blocks().remove(resistor);
+        graph.removeEdge(resistor);
+        edges.remove(edge);
+        if(analysis == Analysis.PATHS) solveAgain();
+        else if(!removed) solveBlockAgain(block);
+    }
+
+    /**
+     * Removes a vertex and all of its edges from the network
+     */
+    public void removeVertex(Vertex<T> vertex){
+        int ordinal = vertices.get(vertex);
+        if(ordinal < 0) throw new RuntimeException("This vertex does not exist in network!");
+        IntBuffer offset = graph.offsets();
+        int[] incident = new int[offset.get(ordinal + 1) - offset.get(ordinal)];
+        graph.incidents().get(offset.get(ordinal), incident);
+        for(int e : incident) removeEdge(edges.objectAt(e));
+        vertices.remove(vertex);
+    }
+
+    /**
+     * @return the ordinal of an edge, which is the Integer of the edge once the network is saved and loaded again, or -1
+     */
+    public int edgeOrdinal(T edge){
+        return edges.get(edge);
+    }
+
+    /**
+     * @return the ordinal of a vertex, which is the ordinal of the vertex once the network is saved and loaded again, or -1
+     */
+    public int vertexOrdinal(Vertex<T> vertex){
+        return vertices.get(vertex);
+    }
+
+    /**
+     * @return the vertex with an ordinal, or null if there is none
+     */
+    public Vertex<T> vertexAt(int ordinal){
+        return ordinal >= 0 && ordinal < vertices.size() ? vertices.objectAt(ordinal) : null;
+    }
+
+    /**
+     * @return the vertex a flow with a positive sign leaves the edge through, in the signed flows of a TransientSimulation
+     */
+    public Vertex<T> startOf(T edge){
+        int e = edges.get(edge);
+        if(e < 0) throw new RuntimeException("This edge does not exist in network!");
+        return vertices.objectAt(graph.from(e));
+    }
+
+    /**
+     * Makes a simulation of the network through time, in which some edges are capacitors or inductors with their weight
+     * as a resistance in series, and the pressure sources of the network are switched on at time 0. The Laplacian of a
+     * fixed time step does not change, so it is factorized here once, and every step of the simulation is one solve.
+     * The simulation keeps what it needs of the network, which can change afterwards without changing the simulation.
+     * @param capacitances the capacitance of every capacitor
+     * @param inductances  the inductance of every inductor
+     * @param timeStep     the time between two steps
+     * @param integration  backward Euler, which damps, or the trapezoidal rule, which is more accurate
+     * @see TransientSimulation
+     */
+    public TransientSimulation<T> transientSimulation(Map<T, Double> capacitances, Map<T, Double> inductances,
+                                                      double timeStep, TransientSimulation.Integration integration){
+        Sources sources = new Sources();
+        return new TransientSimulation<>(graph, edges, byOrdinal(capacitances), byOrdinal(inductances), sources.sources,
+                sources.directions, sources.pressures, timeStep, integration, solverOptions);
+    }
+
+    /**
+     * Solves the steady response of the network to sources that oscillate at every one of the frequencies, with their
+     * pressure as the amplitude, where some edges have a capacitor or an inductor in series with their weight. Every
+     * frequency factorizes the complex admittance matrix on its own, and the frequencies are solved in parallel.
+     * @param capacitances the capacitance in series with every edge that has a capacitor
+     * @param inductances  the inductance in series with every edge that has an inductor
+     * @param frequencies  the frequencies in cycles per unit of time
+     * @see FrequencyResponse
+     */
+    public FrequencyResponse<T> acSweep(Map<T, Double> capacitances, Map<T, Double> inductances, double[] frequencies){
+        Sources sources = new Sources();
+        return new FrequencyResponse<>(graph, edges, byOrdinal(capacitances), byOrdinal(inductances), sources.sources,
+                sources.directions, sources.pressures, frequencies, solverOptions);
+    }
+
+    /**
+     * Solves the flows of the network where some edges are nonlinear elements in series with their weight, by Newton's
+     * method with all sources acting at once. The solver keeps its flows and its symbolic factorization, so solving it
+     * again after setPressure starts from the last solution.
+     * @param elements      the element of every nonlinear edge
+     * @param tolerance     the largest difference of the pressure over an element and its drop, relative to the
+     *                      largest pressure of the sources
+     * @param maxIterations the most iterations of one solve
+     * @return the solver after its first solve
+     * @see NewtonSolver
+     */
+    public NewtonSolver<T> newtonSolver(Map<T, NonlinearElement> elements, double tolerance, int maxIterations){
+        NonlinearElement[] element = new NonlinearElement[graph.edgeCount()];
+        elements.forEach((edge, h) -> element[existingOrdinal(edge)] = h);
+        Sources sources = new Sources();
+        NewtonSolver<T> solver = new NewtonSolver<>(graph, edges, element, sources.sources, sources.directions,
+                sources.pressures, tolerance, maxIterations, solverOptions);
+        solver.solve();
+        return solver;
+    }
+
+    // the sources of the network by ordinal, as the solvers that drive all sources at once take them
+    private class Sources {
+        private final int[] sources = new int[flowSources.size()], directions = new int[sources.length];
+        private final double[] pressures = new double[sources.length];
+
+        private Sources(){
+            int i = 0;
+            for(T source : flowSources.keySet()){
+                sources[i] = edges.get(source);
+                directions[i] = directionOf.get(source);
+                pressures[i++] = pressureOf.get(source);}
+        }
+    }
+
+    private double[] byOrdinal(Map<T, Double> values){
+        double[] byOrdinal = new double[graph.edgeCount()];
+        values.forEach((edge, value) -> byOrdinal[existingOrdinal(edge)] = value);
+        return byOrdinal;
+    }
+
+    private int existingOrdinal(T edge){
+        int e = edges.get(edge);
+        if(e < 0) throw new RuntimeException("This edge does not exist in network!");
+        return e;
+    }
+
+    /**
+     * Sketches the effective resistance between every pair of vertices, with all edges as resistors of their weight.
+     * The sketch takes a number of solves with the Laplacian that grows with log n / epsilon^2, in parallel, after which
+     * a query costs as many multiplications and no solve. A network with fewer vertices than that is solved exactly.
+     * @param epsilon the relative accuracy of every resistance, above 0 and below 1
+     * @param seed    the seed of the random directions of the sketch
+     * @see EffectiveResistance
+     */
+    public EffectiveResistance<T> effectiveResistances(double epsilon, long seed){
+        if(!(epsilon > 0)) throw new RuntimeException("The accuracy must be positive!");
+        return new EffectiveResistance<>(graph, vertices, epsilon, seed, solverOptions);
+    }
+
+    /**
+     * Solves the effective resistance between every pair of vertices exactly, by the inverse of the Laplacian, which
+     * takes a solve and the memory of a row for every vertex
+     * @see #effectiveResistances(double, long)
+     */
+    public EffectiveResistance<T> effectiveResistances(){
+        return new EffectiveResistance<>(graph, vertices, 0, 0, solverOptions);
+    }
+
+    /**
+     * @param source an edge that has been set as a pressure source
+     * @return the equivalent weight of the loops around the source with the current weights
+     */
+    public double equivalentResistanceOf(T source){
+        SourceFlow flow = flowSources.get(source);
+        if(flow == null) throw new RuntimeException("This edge is not a pressure source!");
         return flow.getEquivalentResistance();
     }
 
     /**
-     * @return the laminar flow through every edge in the graph
+     * The sensitivity of the equivalent weight of a source to the weight of every edge in its flow. In nodal analysis
+     * it follows from the flows that are already solved, since d R_eq / d w_i = (I_i / I_source)^2. In paths analysis
+     * the expression of the equivalent weight is differentiated.
+     * @param source an edge that has been set as a pressure source
+     * @return the derivative of the equivalent weight by the weight of every edge in the flow of the source
+     */
+    public HashMap<T, Double> equivalentResistanceGradient(T source){
+        SourceFlow flow = flowSources.get(source);
+        if(flow == null) throw new RuntimeException("This edge is not a pressure source!");
+        HashMap<T, Double> gradient = new HashMap<>();
+        flow.getEquivalentResistanceGradient().forEach((edge, derivative) -> {
+            T asObject = edges.objectAt(edge);
+            if(asObject != null) gradient.put(asObject, derivative);});
+        return gradient;
+    }
+
+    /**
+     * The sensitivity of the flow through an edge, as returned by flowsThrough, to the weight of every edge of its block.
+     * The whole gradient is solved by the adjoint of the system of the block, which costs one solve shared by all
+     * sources and one more for every source in the block, instead of one solve for every weight. Only nodal analysis
+     * computes flow gradients.
+     * @param edge an edge of the graph with a positive weight, or a pressure source
+     * @return the derivative of the flow through the edge by the weight of every edge of its block
+     */
+    public HashMap<T, Double> flowGradient(T edge){
+        int resistor = edges.get(edge);
+        if(resistor < 0) throw new RuntimeException("This edge does not exist in network!");
+        if(analysis != Analysis.NODAL) throw new RuntimeException("Only nodal analysis computes flow gradients!");
+        HashMap<T, Double> gradient = new HashMap<>();
+        // a system is only built for a block with sources, and no other source reaches the edge
+        NodalSystem system = blocks().builtSystemOf(resistor);
+        if(system == null) return gradient;
+        ArrayList<NodalFlow> sources = new ArrayList<>();
+        double flow = 0;
+        for(T source : flowSources.keySet())
+            if(blocks().builtSystemOf(edges.get(source)) == system){
+                NodalFlow nodalFlow = (NodalFlow) flowSources.get(source);
+                sources.add(nodalFlow);
+                flow += nodalFlow.flowThrough(resistor);}
+        if(sources.isEmpty()) return gradient;
+        double[] sensitivity = system.flowSensitivity(sources, system.indexOf(resistor));
+        double sign = flow < 0 ? -1 : 1;
+        for(int e = 0; e < sensitivity.length; e++){
+            T asObject = edges.objectAt(system.edgeAt(e));
+            if(asObject != null) gradient.put(asObject, sign * sensitivity[e]);}
+        return gradient;
+    }
+
+    /**
+     * Enumerates the acyclic paths around a pressure source lazily, from the vertex with the positive pressure to the
+     * other end of the source edge. Only the current path is kept in memory, so the paths can be audited in graphs
+     * with far more paths than fit in memory, and the enumeration stops as soon as the stream is not consumed anymore.
+     * The network must not change while the stream is consumed.
+     * @param source an edge that has been set as a pressure source
+     * @return the edges of every path, in order from the vertex with the positive pressure
+     */
+    public Stream<List<T>> pathsAround(T source){
+        if(!edges.contains(source)) throw new RuntimeException("This edge does not exist in network!");
+        if(!flowSources.containsKey(source)) throw new RuntimeException("This edge is not a pressure source!");
+        PathEnumerator paths = pathEnumeratorOf(source);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(paths, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(path -> {
+                    ArrayList<T> objects = new ArrayList<>(path.length);
+                    for(int e : path) objects.add(edges.objectAt(e));
+                    return objects;});
+    }
+
+    /**
+     * @param maxPaths the most paths that are enumerated
+     * @see #pathsAround(Object)
+     */
+    public Stream<List<T>> pathsAround(T source, long maxPaths){
+        return pathsAround(source).limit(maxPaths);
+    }
+
+    /**
+     * Counts the acyclic paths around a pressure source. When the source was solved by paths analysis and the
+     * transitions of its automaton contain no cycle, the paths of the automaton are exactly these paths and they are
+     * counted by dynamic programming on it in linear time. Otherwise, as in a bridge where the flow can pass the middle
+     * edge either way, the paths are enumerated one at a time.
+     * @param source an edge that has been set as a pressure source
+     */
+    public BigInteger pathCount(T source){
+        LADFA<Integer> automaton = acyclicAutomatonOf(source);
+        if(automaton != null) return automaton.pathCount();
+        long count = 0;
+        for(PathEnumerator paths = pathEnumeratorOf(source); paths.hasNext(); paths.next()) count++;
+        return BigInteger.valueOf(count);
+    }
+
+    /**
+     * @param source an edge that has been set as a pressure source
+     * @return for every edge the amount of acyclic paths around the source that pass through it
+     * @see #pathCount(Object)
+     */
+    public HashMap<T, BigInteger> pathsThrough(T source){
+        LADFA<Integer> automaton = acyclicAutomatonOf(source);
+        HashMap<Integer, BigInteger> pathsThrough = new HashMap<>();
+        if(automaton != null) pathsThrough = automaton.pathsThrough();
+        else for(PathEnumerator paths = pathEnumeratorOf(source); paths.hasNext(); )
+            for(int e : paths.next()) pathsThrough.merge(e, BigInteger.ONE, BigInteger::add);
+        HashMap<T, BigInteger> byObject = new HashMap<>();
+        pathsThrough.forEach((e, paths) -> byObject.put(edges.objectAt(e), paths));
+        return byObject;
+    }
+
+    /**
+     * @param source an edge that has been set as a pressure source
+     * @return the smallest total weight of an acyclic path around the source, or infinity if there is none
+     * @see #pathCount(Object)
+     */
+    public double minimumPathWeight(T source){
+        LADFA<Integer> automaton = acyclicAutomatonOf(source);
+        if(automaton != null) return automaton.minimumPathWeight(graph::weight);
+        double minimum = Double.POSITIVE_INFINITY;
+        for(PathEnumerator paths = pathEnumeratorOf(source); paths.hasNext(); )
+            minimum = Math.min(minimum, weightOf(paths.next()));
+        return minimum;
+    }
+
+    /**
+     * @param source an edge that has been set as a pressure source
+     * @return the largest total weight of an acyclic path around the source, or -infinity if there is none
+     * @see #pathCount(Object)
+     */
+    public double maximumPathWeight(T source){
+        LADFA<Integer> automaton = acyclicAutomatonOf(source);
+        if(automaton != null) return automaton.maximumPathWeight(graph::weight);
+        double maximum = Double.NEGATIVE_INFINITY;
+        for(PathEnumerator paths = pathEnumeratorOf(source); paths.hasNext(); )
+            maximum = Math.max(maximum, weightOf(paths.next()));
+        return maximum;
+    }
+
+    // the automaton of a source, if it was solved by paths analysis and its paths are the acyclic paths around it
+    private LADFA<Integer> acyclicAutomatonOf(T source){
+        SourceFlow flow = flowSources.get(source);
+        if(flow == null) throw new RuntimeException("This edge is not a pressure source!");
+        if(flow instanceof Flow pathFlow && pathFlow.getAutomaton().isAcyclic()) return pathFlow.getAutomaton();
+        return null;
+    }
+
+    private PathEnumerator pathEnumeratorOf(T source){
+        return new PathEnumerator(graph, edges.get(source), directionOf.get(source));
+    }
+
+    private double weightOf(int[] path){
+        double weight = 0;
+        for(int e : path) weight += graph.weight(e);
+        return weight;
+    }
+
+    /**
+     * @param source an edge that has been set as a pressure source
+     * @return how accurately the flow of the source was solved
+     */
+    public Convergence convergenceOf(T source){
+        SourceFlow flow = flowSources.get(source);
+        if(flow == null) throw new RuntimeException("This edge is not a pressure source!");
+        if(!(flow instanceof NodalFlow nodalFlow)) throw new RuntimeException("Only nodal analysis reports convergence!");
+        return nodalFlow.getConvergence();
+    }
+
+    /**
+     * @return the laminar flow through every edge in the graph that a source reaches
      */
     public HashMap<T, Double> flowsThrough(){
         HashMap<T, Double> flowsThrough = new HashMap<>();
-        for(Flow flow : this.flowSources.values()){
-            for(Edge edge : toResistor.values()){
-                if(!flow.contains(edge)) continue;
-                T asObject = toObject.get(edge);
-                double currentFlow = flowsThrough.getOrDefault(asObject, 0.0);
-                currentFlow += flow.flowThrough(edge);
-                flowsThrough.put(asObject, currentFlow);
+        flowResult().forEach(flowsThrough::put);
+        return flowsThrough;
+    }
+
+    /**
+     * The flows are superposed once, and the same result is returned until a source, a weight or an edge changes, so
+     * reading it for many edges costs no solve and no allocation. In nodal analysis the sources of every block share a
+     * single solve of its system, and the blocks are solved in parallel.
+     * @return the laminar flow through every edge, as flowsThrough gives it
+     */
+    public FlowResult<T> flowResult(){
+        if(flowResult == null) this.flowResult = superposeFlows();
+        return flowResult;
+    }
+
+    /**
+     * The potentials are found once from the flows of flowResult, by the pressure drop over every edge, and are kept
+     * until a source, a weight or an edge changes, so the potential of a vertex or the drop over an edge is a lookup.
+     * A source has its pressure over it, plus its weight times the flows of the other sources through it.
+     * @param reference the vertex of potential 0
+     * @return the potential of every vertex above the reference, NaN for a vertex that is not connected to it
+     */
+    public Potentials<T> potentials(Vertex<T> reference){
+        int ordinal = vertices.get(reference);
+        if(ordinal < 0) throw new RuntimeException("This vertex does not exist in network!");
+        if(potentials == null) this.potentials = solvePotentials();
+        return potentials.relativeTo(ordinal);
+    }
+
+    // the results of the current sources and weights are superposed again when they are next asked for
+    private void forgetResults(){
+        this.flowResult = null;
+        this.potentials = null;
+    }
+
+    /**
+     * @return the pressure sources in the order they were set, which is the order of the pressures of a scenario in sweep
+     */
+    public List<T> sources(){
+        return new ArrayList<>(flowSources.keySet());
+    }
+
+    /**
+     * Solves many scenarios of pressures on the same network at once, without changing the pressures of its sources.
+     * The flows are linear in the pressures, so every source is solved once for the pressure 1, and a scenario is the sum
+     * of these flows times its pressures. In nodal analysis the sources of a block share one solve with the existing
+     * factorization for all of their right hand sides. The scenarios are then summed in parallel, a few at a time so
+     * that the flows of a source are reused from the cache for all of them.
+     * @param pressuresPerScenario for every scenario the pressure of every source, in the order of sources
+     * @return for every scenario the flow through every edge by its ordinal, as flowsThrough would give it with these
+     *         pressures. Removed edges have the flow 0
+     */
+    public double[][] sweep(double[][] pressuresPerScenario){
+        List<T> sources = sources();
+        for(double[] pressures : pressuresPerScenario)
+            if(pressures.length != sources.size()) throw new RuntimeException("Every scenario needs a pressure for every source!");
+        ArrayList<UnitFlows> unitFlows = new ArrayList<>();
+        if(analysis == Analysis.NODAL) nodalUnitFlows(sources, unitFlows);
+        else for(int k = 0; k < sources.size(); k++) unitFlows.add(pathUnitFlows(sources.get(k), k));
+        double[][] flows = new double[pressuresPerScenario.length][graph.edgeCount()];
+        solverOptions.pool.invoke(new Superposition(pressuresPerScenario, unitFlows, flows, 0, flows.length));
+        return flows;
+    }
+
+    // the flows of the pressure 1 of some sources, which all flow through the same edges
+    private static class UnitFlows {
+        private final int[] edges, sources;
+        private final double[][] flows;
+
+        private UnitFlows(int[] edges, int[] sources, double[][] flows){
+            this.edges = edges;
+            this.sources = sources;
+            this.flows = flows;
+        }
+    }
+
+    // the flows of the pressure 1 of the sources of every block, all blocks in parallel
+    private void nodalUnitFlows(List<T> sources, ArrayList<UnitFlows> unitFlows){
+        HashMap<NodalSystem, ArrayList<Integer>> sourcesOf = new HashMap<>();
+        for(int k = 0; k < sources.size(); k++)
+            sourcesOf.computeIfAbsent(blocks().systemOf(edges.get(sources.get(k))), system -> new ArrayList<>()).add(k);
+        ArrayList<NodalSystem> systems = new ArrayList<>(sourcesOf.keySet());
+        ArrayList<ForkJoinTask<double[][]>> tasks = new ArrayList<>();
+        for(NodalSystem system : systems){
+            ArrayList<NodalFlow> flows = new ArrayList<>();
+            for(int k : sourcesOf.get(system)) flows.add((NodalFlow) flowSources.get(sources.get(k)));
+            tasks.add(solverOptions.pool.submit(() -> system.unitFlows(flows)));}
+        for(int i = 0; i < systems.size(); i++){
+            NodalSystem system = systems.get(i);
+            // a removed edge can still be in the system, and gets no flow
+            int[] edgesOfSystem = new int[system.edgeCount()];
+            for(int e = 0; e < edgesOfSystem.length; e++)
+                edgesOfSystem[e] = edges.objectAt(system.edgeAt(e)) == null ? -1 : system.edgeAt(e);
+            int[] ofSystem = sourcesOf.get(system).stream().mapToInt(k -> k).toArray();
+            unitFlows.add(new UnitFlows(edgesOfSystem, ofSystem, tasks.get(i).join()));
+        }
+    }
+
+    // the flows of the pressure 1 of a source solved by paths analysis
+    private UnitFlows pathUnitFlows(T source, int k){
+        SourceFlow flow = flowSources.get(source);
+        int count = 0;
+        for(int edge = 0; edge < graph.edgeCount(); edge++) if(graph.exists(edge) && flow.contains(edge)) count++;
+        int[] edgesOfFlow = new int[count];
+        double[] unitFlow = new double[count];
+        flow.setPressure(1);
+        for(int edge = 0, i = 0; edge < graph.edgeCount(); edge++){
+            if(!graph.exists(edge) || !flow.contains(edge)) continue;
+            edgesOfFlow[i] = edge;
+            unitFlow[i++] = flow.flowThrough(edge);}
+        flow.setPressure(pressureOf.get(source));
+        return new UnitFlows(edgesOfFlow, new int[]{k}, new double[][]{unitFlow});
+    }
+
+    // sums the flows of the sources into the flows of a range of scenarios, halving the range until it is small. A task
+    // is never serialized, although RecursiveAction is Serializable
+    @SuppressWarnings("serial")
+    private static class Superposition extends RecursiveAction {
+        private static final int SCENARIOS = 32, TILE = 512;
+
+        private final double[][] pressures, flows;
+        private final List<UnitFlows> unitFlows;
+        private final int from, to;
+
+        private Superposition(double[][] pressures, List<UnitFlows> unitFlows, double[][] flows, int from, int to){
+            this.pressures = pressures;
+            this.unitFlows = unitFlows;
+            this.flows = flows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > SCENARIOS){
+                int middle = (from + to) >>> 1;
+                invokeAll(new Superposition(pressures, unitFlows, flows, from, middle),
+                        new Superposition(pressures, unitFlows, flows, middle, to));
+                return;}
+            // a tile of the flows of all sources of a block stays in the cache for all scenarios of the range, and the
+            // flow of a scenario through an edge is summed in a small array before it is written once
+            double[] sum = new double[TILE];
+            for(UnitFlows unit : unitFlows){
+                int[] edges = unit.edges;
+                for(int first = 0; first < edges.length; first += TILE){
+                    int last = Math.min(first + TILE, edges.length);
+                    for(int s = from; s < to; s++){
+                        Arrays.fill(sum, 0);
+                        for(int j = 0; j < unit.sources.length; j++){
+                            double p = pressures[s][unit.sources[j]];
+                            if(p == 0) continue;
+                            double[] flow = unit.flows[j];
+                            for(int i = first; i < last; i++) sum[i - first] += p * flow[i];}
+                        double[] row = flows[s];
+                        for(int i = first; i < last; i++) if(edges[i] >= 0) row[edges[i]] += sum[i - first];}
+                }
             }
+            for(int s = from; s < to; s++) for(int e = 0; e < flows[s].length; e++) flows[s][e] = Math.abs(flows[s][e]);
         }
-        flowsThrough.replaceAll((k, v) -> Math.abs(v));
-        return flowsThrough;
     }
 
+    /**
+     * Samples the weights of some edges from their tolerances and collects the statistics of the flow through every
+     * edge over all samples, as flowsThrough gives it, without keeping the samples. The samples are solved in parallel
+     * on the pool of the SolverOptions. Every worker solves on its own copy of the weights, which shares the edges with
+     * this network, and keeps its systems: in nodal analysis a sample only assembles the Laplacian with the new weights
+     * and factorizes it numerically, with the ordering and elimination tree of the first one. The network must not
+     * change while it is sampled.
+     * @param tolerances how the weight of every varied edge is spread, the other edges keep their weight
+     * @param samples    the amount of samples
+     * @param seed       the seed of the samples, the same seed draws the same samples
+     */
+    public FlowStatistics<T> monteCarlo(Map<T, Tolerance> tolerances, int samples, long seed){
+        if(samples <= 0) throw new RuntimeException("The amount of samples must be positive!");
+        int[] varied = new int[tolerances.size()];
+        Tolerance[] toleranceOf = new Tolerance[varied.length];
+        int i = 0;
+        for(Map.Entry<T, Tolerance> entry : tolerances.entrySet()){
+            varied[i] = edges.get(entry.getKey());
+            if(varied[i] < 0) throw new RuntimeException("This edge does not exist in network!");
+            toleranceOf[i++] = entry.getValue();}
+        // every chunk of samples has its own generator, so a sample does not depend on the worker that draws it
+        int chunks = (samples + SAMPLE_CHUNK - 1) / SAMPLE_CHUNK;
+        SplittableRandom random = new SplittableRandom(seed);
+        SplittableRandom[] randomOf = new SplittableRandom[chunks];
+        for(int c = 0; c < chunks; c++) randomOf[c] = random.split();
+        AtomicInteger nextChunk = new AtomicInteger();
+        ArrayList<ForkJoinTask<FlowStatistics<T>>> tasks = new ArrayList<>();
+        for(int w = 0; w < Math.min(solverOptions.pool.getParallelism(), chunks); w++){
+            CompactGraph sampled = graph.withOwnWeights();
+            tasks.add(solverOptions.pool.submit(() -> {
+                FlowNetwork<Integer> sampler = samplerOn(sampled);
+                FlowStatistics<T> statistics = new FlowStatistics<>(edges, graph);
+                for(int c = nextChunk.getAndIncrement(); c < chunks; c = nextChunk.getAndIncrement())
+                    for(int s = c * SAMPLE_CHUNK; s < Math.min(samples, (c + 1) * SAMPLE_CHUNK); s++){
+                        for(int k = 0; k < varied.length; k++)
+                            sampled.setWeight(varied[k], toleranceOf[k].sample(graph.weight(varied[k]), randomOf[c]));
+                        sampler.solveReweighed();
+                        statistics.add(sampler.flowResult().flows);}
+                return statistics;}));
+        }
+        FlowStatistics<T> statistics = tasks.getFirst().join();
+        for(int w = 1; w < tasks.size(); w++) statistics.merge(tasks.get(w).join());
+        return statistics;
+    }
+
+    // a network on a graph with its own weights, whose edges and vertices are the ordinals of this one, with the same sources
+    private FlowNetwork<Integer> samplerOn(CompactGraph sampled){
+        FlowNetwork<Integer> sampler = ofGraph(sampled, analysis, solverOptions, new HashMap<>());
+        for(T source : flowSources.keySet())
+            sampler.setPressure(edges.get(source), pressureOf.get(source), sampler.vertexAt(directionOf.get(source)));
+        return sampler;
+    }
+
+    // solves every source again after weights changed, none of them to or from 0
+    private void solveReweighed(){
+        forgetResults();
+        if(analysis == Analysis.PATHS){
+            solveAgain();
+            return;}
+        for(NodalSystem system : blocks().builtSystems()) system.reweigh();
+    }
+
+    // the sum of the flows of all sources through every edge by its ordinal, 0 for an edge that none reaches
+    private FlowResult<T> superposeFlows(){
+        double[] flows = new double[graph.edgeCount()];
+        boolean[] reached = new boolean[flows.length];
+        if(analysis == Analysis.PATHS){
+            for(SourceFlow flow : flowSources.values())
+                for(int edge = 0; edge < flows.length; edge++)
+                    if(graph.exists(edge) && flow.contains(edge)){
+                        flows[edge] += flow.flowThrough(edge);
+                        reached[edge] = true;}}
+        else if(!flowSources.isEmpty()){
+            HashMap<NodalSystem, ArrayList<NodalFlow>> sourcesOf = new HashMap<>();
+            for(T source : flowSources.keySet())
+                sourcesOf.computeIfAbsent(blocks().systemOf(edges.get(source)), system -> new ArrayList<>())
+                        .add((NodalFlow) flowSources.get(source));
+            ArrayList<NodalSystem> systems = new ArrayList<>(sourcesOf.keySet());
+            ArrayList<ForkJoinTask<double[]>> tasks = new ArrayList<>();
+            for(NodalSystem system : systems) tasks.add(solverOptions.pool.submit(() -> system.flows(sourcesOf.get(system))));
+            // every block writes its own edges, which are merged after all of them are done
+            for(int i = 0; i < systems.size(); i++){
+                NodalSystem system = systems.get(i);
+                double[] flowsOfSystem = tasks.get(i).join();
+                for(int e = 0; e < flowsOfSystem.length; e++)
+                    if(graph.exists(system.edgeAt(e))){
+                        flows[system.edgeAt(e)] = flowsOfSystem[e];
+                        reached[system.edgeAt(e)] = true;}}}
+        return new FlowResult<>(edges, flows, reached);
+    }
+
+    // the potentials above the first vertex of every connected part, by a breadth first search over the pressure drops
+    private Potentials<T> solvePotentials(){
+        double[] flows = flowResult().signed;
+        double[] drop = new double[graph.edgeCount()];
+        for(int e = 0; e < drop.length; e++) if(graph.exists(e)) drop[e] = graph.weight(e) * flows[e];
+        for(T source : flowSources.keySet()){
+            int s = edges.get(source);
+            double sign = graph.from(s) == directionOf.get(source) ? 1 : -1;
+            // a source is ideal for its own flow, and only its weight for the flows of the others
+            double ownFlow = graph.weight(s) == 0 ? 0 : flowSources.get(source).flowThrough(s);
+            drop[s] = sign * pressureOf.get(source) + graph.weight(s) * (flows[s] - ownFlow);}
+        IntBuffer offsets = graph.offsets(), incident = graph.incidents();
+        int n = graph.vertexCount();
+        double[] potential = new double[n];
+        int[] part = new int[n], queue = new int[n];
+        Arrays.fill(part, -1);
+        for(int start = 0; start < n; start++){
+            if(part[start] >= 0) continue;
+            part[start] = start;
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            while(head < tail){
+                int v = queue[head++];
+                for(int i = offsets.get(v); i < offsets.get(v + 1); i++){
+                    int e = incident.get(i), w = graph.other(e, v);
+                    if(part[w] >= 0) continue;
+                    part[w] = start;
+                    // the drop is the potential of the start of the edge minus the potential of its end
+                    potential[w] = graph.from(e) == v ? potential[v] - drop[e] : potential[v] + drop[e];
+                    queue[tail++] = w;}}
+        }
+        return new Potentials<>(vertices, edges, potential, part, drop, 0);
+    }
 
 }
@@ -0,0 +1,71 @@
+package FlowNetwork;
+
+import java.util.function.ObjDoubleConsumer;
+
+    /*
+    The laminar flows through all edges of a network, as flowsThrough gives them, kept as one array of doubles by the
+    ordinals of the edges. The network computes a result once and hands out the same result until a source, a weight or
+    an edge changes, so reading the flows of many edges neither solves nor allocates anything.
+
+    A result does not change after it is made. The ordinals of a network are never given to another edge, so a result
+    that the network has replaced still gives the flows of the edges that existed when it was made, as long as the
+    network still knows them.
+     */
+public final class FlowResult<T> {
+
+    private final Ordinals<T> edges;
+    final double[] flows;
+    // the flows with their direction from the start to the end of every edge, which the potentials are found from
+    final double[] signed;
+    // the edges a source reaches, which are the keys of flowsThrough
+    private final boolean[] reached;
+
+    protected FlowResult(Ordinals<T> edges, double[] signed, boolean[] reached){
+        this.edges = edges;
+        this.signed = signed;
+        this.flows = new double[signed.length];
+        for(int e = 0; e < flows.length; e++) flows[e] = Math.abs(signed[e]);
+        this.reached = reached;
+    }
+
+    /**
+     * @return the flow through the edge, 0 if no source reaches it
+     */
+    public double flowOf(T edge){
+        int e = edges.get(edge);
+        if(e < 0 || e >= flows.length) throw new RuntimeException("This edge does not exist in network!");
+        return flows[e];
+    }
+
+    /**
+     * @return the flow through the edge with the ordinal, 0 if no source reaches it or it has been removed
+     */
+    public double flowAt(int ordinal){
+        return flows[ordinal];
+    }
+
+    /**
+     * @return the amount of ordinals, including those of removed edges
+     */
+    public int size(){
+        return flows.length;
+    }
+
+    /**
+     * @return a copy of the flows by the ordinals of the edges
+     */
+    public double[] toArray(){
+        return flows.clone();
+    }
+
+    /**
+     * Gives every edge that a source reaches with its flow to the action, in the order of the ordinals
+     */
+    public void forEach(ObjDoubleConsumer<T> action){
+        for(int e = 0; e < flows.length; e++){
+            if(!reached[e]) continue;
+            T edge = edges.objectAt(e);
+            if(edge != null) action.accept(edge, flows[e]);}
+    }
+
+}
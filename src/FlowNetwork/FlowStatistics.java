@@ -0,0 +1,94 @@
+package FlowNetwork;
+
+    /*
+    The statistics of the flow through every edge over the samples of a Monte Carlo run, kept without the samples.
+
+    The mean and the sum of squared deviations of every edge are updated by Welford's method, which stays accurate when
+    the deviations are small compared to the flow, and the percentiles come from a QuantileSketch of every edge. The
+    statistics of separate runs are merged exactly: the means and sums of squares by the formula of Chan, Golub and
+    LeVeque, and the sketches by adding their bins. So every worker of a run keeps its own statistics, which are merged
+    once all are done. The statistics are indexed by the ordinals of the edges, which are never given to another edge.
+     */
+public class FlowStatistics<T> {
+
+    private static final double ACCURACY = 0.01;
+
+    private final Ordinals<T> edges;
+    private final double[] mean, squares;
+    private final QuantileSketch[] sketches;
+    private long samples;
+
+    /**
+     * @param edges the edges of the network by their ordinals
+     * @param graph the graph of the network, whose existing edges get statistics
+     */
+    protected FlowStatistics(Ordinals<T> edges, CompactGraph graph){
+        this.edges = edges;
+        int m = graph.edgeCount();
+        this.mean = new double[m];
+        this.squares = new double[m];
+        this.sketches = new QuantileSketch[m];
+        for(int e = 0; e < m; e++) if(graph.exists(e)) sketches[e] = new QuantileSketch(ACCURACY);
+    }
+
+    // the flows of one sample by the ordinals of their edges
+    protected void add(double[] flows){
+        samples++;
+        for(int e = 0; e < sketches.length; e++){
+            if(sketches[e] == null) continue;
+            double delta = flows[e] - mean[e];
+            mean[e] += delta / samples;
+            squares[e] += delta * (flows[e] - mean[e]);
+            sketches[e].add(flows[e]);}
+    }
+
+    protected void merge(FlowStatistics<T> other){
+        if(other.samples == 0) return;
+        long total = samples + other.samples;
+        for(int e = 0; e < sketches.length; e++){
+            if(sketches[e] == null) continue;
+            double delta = other.mean[e] - mean[e];
+            mean[e] += delta * other.samples / total;
+            squares[e] += other.squares[e] + delta * delta * samples / total * other.samples;
+            sketches[e].merge(other.sketches[e]);}
+        this.samples = total;
+    }
+
+    private int ordinalOf(T edge){
+        int e = edges.get(edge);
+        if(e < 0 || e >= sketches.length || sketches[e] == null) throw new RuntimeException("This edge has no statistics!");
+        return e;
+    }
+
+    public long samples(){
+        return samples;
+    }
+
+    /**
+     * @return the mean of the flow through the edge, as flowsThrough gives it
+     */
+    public double mean(T edge){
+        return mean[ordinalOf(edge)];
+    }
+
+    /**
+     * @return the sample variance of the flow through the edge, or 0 for a single sample
+     */
+    public double variance(T edge){
+        int e = ordinalOf(edge);
+        return samples < 2 ? 0 : squares[e] / (samples - 1);
+    }
+
+    public double standardDeviation(T edge){
+        return Math.sqrt(variance(edge));
+    }
+
+    /**
+     * @param percent the percentile between 0 and 100, where 50 is the median
+     * @return the flow through the edge that the percentage of the samples is below, within 1 % of its value
+     */
+    public double percentile(T edge, double percent){
+        return sketches[ordinalOf(edge)].quantile(percent / 100);
+    }
+
+}
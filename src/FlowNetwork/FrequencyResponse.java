@@ -0,0 +1,247 @@
+package FlowNetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+    /*
+    The steady response of a network to sources that oscillate at one frequency, for every frequency of a sweep, as the
+    response of a network to a pulsating pump. Every source oscillates with its pressure as the amplitude and phase 0,
+    and every flow is a complex amplitude: its magnitude is the amplitude of the oscillating flow and its argument how far
+    the flow is ahead of the sources.
+
+    An edge is its weight R in series with its capacitor C and inductor L, if it has them, so at the angular frequency w
+    its impedance is Z = R + j (w L - 1 / (w C)) and its admittance 1 / Z. The wires and sources are contracted by a
+    ConstraintForest as in a TransientSimulation, and the other edges make a complex symmetric admittance matrix of the
+    same pattern at every frequency. So the pattern is analyzed once, by a SparseLDL of the matrix with the admittance 1
+    for every edge, and every frequency only factorizes numerically with a ComplexLDL and solves once.
+
+    The frequencies are independent, so they are solved in parallel on the pool of the SolverOptions. Every worker keeps
+    its own factorization and work arrays and takes chunks of frequencies until all are done, while the forest and the
+    pattern are shared. The flows of every frequency are kept interleaved as in a ComplexLDL, by the ordinals of the edges.
+     */
+public class FrequencyResponse<T> {
+
+    private static final int FREQUENCY_CHUNK = 8;
+
+    private final Ordinals<T> edges;
+    private final double[] frequencies;
+    private final double[][] flows;
+
+    // the edges with an admittance, and where it is added in the matrix, or -1 at a grounded end
+    private final int[] branch, from, to;
+    private final double[] resistance, capacitance, inductance;
+    private final int[] atFrom, atTo, between, betweenTransposed;
+
+    private final ConstraintForest forest;
+    private final SparseMatrix pattern;
+    private final SparseLDL symbolic;
+
+    /**
+     * @param capacitance the capacitance of every edge by its ordinal, or 0 if it has no capacitor
+     * @param inductance  the inductance of every edge by its ordinal, or 0 if it has no inductor
+     * @param sources     the ordinals of the source edges, with the vertex of their positive pressure and their amplitude
+     * @param frequencies the frequencies in cycles per unit of time, which must be positive
+     */
+    protected FrequencyResponse(CompactGraph graph, Ordinals<T> edges, double[] capacitance, double[] inductance,
+                                int[] sources, int[] directions, double[] pressures, double[] frequencies,
+                                SolverOptions options){
+        for(double f : frequencies) if(!(f > 0)) throw new RuntimeException("The frequencies must be positive!");
+        this.edges = edges;
+        this.frequencies = frequencies.clone();
+        int m = graph.edgeCount();
+        boolean[] isBranch = ConstraintForest.branches(graph, capacitance, inductance, sources);
+        this.forest = new ConstraintForest(graph, isBranch, sources, directions, pressures);
+        int branches = 0;
+        for(int e = 0; e < m; e++) if(isBranch[e]) branches++;
+        this.branch = new int[branches];
+        this.from = new int[branches];
+        this.to = new int[branches];
+        this.resistance = new double[branches];
+        this.capacitance = new double[branches];
+        this.inductance = new double[branches];
+        for(int e = 0, b = 0; e < m; e++){
+            if(!isBranch[e]) continue;
+            branch[b] = e;
+            from[b] = graph.from(e);
+            to[b] = graph.to(e);
+            resistance[b] = graph.weight(e);
+            this.capacitance[b] = capacitance[e];
+            this.inductance[b] = inductance[e];
+            b++;}
+
+        int n = forest.unknowns();
+        int[] node = forest.node;
+        SparseMatrix.Assembly unit = new SparseMatrix.Assembly(n, options.storage);
+        for(int b = 0; b < branches; b++){
+            int a = node[from[b]], c = node[to[b]];
+            if(a == c) continue;
+            if(a >= 0) unit.add(a, a, 1);
+            if(c >= 0) unit.add(c, c, 1);
+            if(a >= 0 && c >= 0) unit.addSymmetric(a, c, -1);}
+        this.pattern = unit.toMatrix();
+        this.symbolic = n == 0 ? null : new SparseLDL(pattern);
+        this.atFrom = new int[branches];
+        this.atTo = new int[branches];
+        this.between = new int[branches];
+        this.betweenTransposed = new int[branches];
+        for(int b = 0; b < branches; b++){
+            int a = node[from[b]], c = node[to[b]];
+            boolean within = a == c;
+            atFrom[b] = a >= 0 && !within ? pattern.entryOf(a, a) : -1;
+            atTo[b] = c >= 0 && !within ? pattern.entryOf(c, c) : -1;
+            between[b] = a >= 0 && c >= 0 && !within ? pattern.entryOf(a, c) : -1;
+            betweenTransposed[b] = a >= 0 && c >= 0 && !within ? pattern.entryOf(c, a) : -1;}
+
+        this.flows = new double[frequencies.length][];
+        int chunks = (frequencies.length + FREQUENCY_CHUNK - 1) / FREQUENCY_CHUNK;
+        AtomicInteger nextChunk = new AtomicInteger();
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int w = 0; w < Math.min(options.pool.getParallelism(), chunks); w++)
+            tasks.add(options.pool.submit(() -> {
+                Worker worker = new Worker(graph.vertexCount(), m);
+                for(int c = nextChunk.getAndIncrement(); c < chunks; c = nextChunk.getAndIncrement())
+                    for(int k = c * FREQUENCY_CHUNK; k < Math.min(frequencies.length, (c + 1) * FREQUENCY_CHUNK); k++)
+                        flows[k] = worker.solve(2 * Math.PI * frequencies[k]);}));
+        for(ForkJoinTask<?> task : tasks) task.join();
+    }
+
+    // the factorization and the vectors of one thread
+    private class Worker {
+        private final ComplexLDL solver;
+        private final double[] entries, admittance, potentials, outflowReal, outflowImaginary, real, imaginary;
+
+        private Worker(int vertices, int m){
+            this.solver = symbolic == null ? null : new ComplexLDL(symbolic);
+            this.entries = new double[2 * pattern.nonZeros()];
+            this.admittance = new double[2 * branch.length];
+            this.potentials = new double[2 * forest.unknowns()];
+            this.outflowReal = new double[vertices];
+            this.outflowImaginary = new double[vertices];
+            this.real = new double[m];
+            this.imaginary = new double[m];
+        }
+
+        // the interleaved flows through all edges at the angular frequency
+        private double[] solve(double omega){
+            Arrays.fill(entries, 0);
+            Arrays.fill(potentials, 0);
+            double[] offset = forest.offset;
+            int[] node = forest.node;
+            for(int b = 0; b < branch.length; b++){
+                double reactance = (inductance[b] != 0 ? omega * inductance[b] : 0)
+                        - (capacitance[b] != 0 ? 1 / (omega * capacitance[b]) : 0);
+                double norm = resistance[b] * resistance[b] + reactance * reactance;
+                if(norm == 0) throw new RuntimeException("An edge has no impedance at a frequency of the sweep!");
+                double yr = resistance[b] / norm, yi = -reactance / norm;
+                admittance[2 * b] = yr;
+                admittance[2 * b + 1] = yi;
+                add(atFrom[b], yr, yi);
+                add(atTo[b], yr, yi);
+                add(between[b], -yr, -yi);
+                add(betweenTransposed[b], -yr, -yi);
+                // the flow that the offsets of the ends already drive through the branch
+                double over = offset[from[b]] - offset[to[b]];
+                int a = node[from[b]], c = node[to[b]];
+                if(a == c || over == 0) continue;
+                if(a >= 0){
+                    potentials[2 * a] -= yr * over;
+                    potentials[2 * a + 1] -= yi * over;}
+                if(c >= 0){
+                    potentials[2 * c] += yr * over;
+                    potentials[2 * c + 1] += yi * over;}}
+            if(solver != null){
+                solver.factorize(pattern, entries);
+                solver.solve(potentials);}
+            Arrays.fill(outflowReal, 0);
+            Arrays.fill(outflowImaginary, 0);
+            Arrays.fill(real, 0);
+            Arrays.fill(imaginary, 0);
+            for(int b = 0; b < branch.length; b++){
+                int a = node[from[b]], c = node[to[b]];
+                double vr = offset[from[b]] - offset[to[b]], vi = 0;
+                if(a >= 0){
+                    vr += potentials[2 * a];
+                    vi += potentials[2 * a + 1];}
+                if(c >= 0){
+                    vr -= potentials[2 * c];
+                    vi -= potentials[2 * c + 1];}
+                double yr = admittance[2 * b], yi = admittance[2 * b + 1];
+                double ir = yr * vr - yi * vi, ii = yr * vi + yi * vr;
+                real[branch[b]] = ir;
+                imaginary[branch[b]] = ii;
+                outflowReal[from[b]] += ir;
+                outflowReal[to[b]] -= ir;
+                outflowImaginary[from[b]] += ii;
+                outflowImaginary[to[b]] -= ii;}
+            forest.treeFlows(outflowReal, real);
+            forest.treeFlows(outflowImaginary, imaginary);
+            double[] flows = new double[2 * real.length];
+            for(int e = 0; e < real.length; e++){
+                flows[2 * e] = real[e];
+                flows[2 * e + 1] = imaginary[e];}
+            return flows;
+        }
+
+        private void add(int entry, double real, double imaginary){
+            if(entry < 0) return;
+            entries[2 * entry] += real;
+            entries[2 * entry + 1] += imaginary;
+        }
+    }
+
+    public int size(){
+        return frequencies.length;
+    }
+
+    public double frequency(int k){
+        return frequencies[k];
+    }
+
+    /**
+     * @return the complex flows through all edges at the k-th frequency, interleaved by the ordinals of the edges and
+     *         positive in the direction that startOf of the network gives. Removed edges have the flow 0
+     */
+    public double[] flowsAt(int k){
+        return flows[k];
+    }
+
+    private int ordinalOf(T edge){
+        int e = edges.get(edge);
+        if(e < 0 || 2 * e >= flows[0].length) throw new RuntimeException("This edge does not exist in network!");
+        return e;
+    }
+
+    /**
+     * @return the amplitude of the flow through the edge at the k-th frequency
+     */
+    public double magnitude(int k, T edge){
+        int e = ordinalOf(edge);
+        return Math.hypot(flows[k][2 * e], flows[k][2 * e + 1]);
+    }
+
+    /**
+     * @return how far the flow through the edge is ahead of the sources at the k-th frequency, in radians between -pi
+     *         and pi, in the direction that startOf of the network gives
+     */
+    public double phase(int k, T edge){
+        int e = ordinalOf(edge);
+        return Math.atan2(flows[k][2 * e + 1], flows[k][2 * e]);
+    }
+
+    /**
+     * @return the impedance that the source drives at the k-th frequency, as the complex number {real, imaginary}: its
+     *         pressure over the flow out of its positive end into the network, with all other sources acting
+     */
+    public double[] impedance(int k, T source){
+        int e = ordinalOf(source), s = forest.sourceIndex(e);
+        if(s < 0) throw new RuntimeException("This edge is not a pressure source!");
+        double p = forest.pressure(s);
+        // the flow leaves the positive end, so it goes through the source against the sign of its pressure
+        double ir = -forest.sign(s) * flows[k][2 * e], ii = -forest.sign(s) * flows[k][2 * e + 1];
+        double norm = ir * ir + ii * ii;
+        return new double[]{p * ir / norm, -p * ii / norm};
+    }
+
+}
@@ -0,0 +1,78 @@
+package FlowNetwork;
+
+import java.util.BitSet;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+    /*
+    Ordinals of objects that are their own ordinal, like the edges and vertices of a network read by NetworkFile. Nothing
+    is stored for an object: its ordinal is read from it and the object is made from its ordinal again when it is asked
+    for, so a network of any size keeps no objects for its edges and vertices. Only the ordinals of removed objects are
+    kept, in a BitSet, unless the graph already knows them as removed edges.
+     */
+public class IdentityOrdinals<T> extends Ordinals<T> {
+
+    private final ToIntFunction<T> ordinalOf;
+    private final IntFunction<T> objectOf;
+    private final IntSupplier size;
+    private final IntPredicate exists;
+    private final BitSet removed;
+
+    /**
+     * @param ordinalOf the ordinal of an object, or -1 if it can not have one
+     * @param objectOf  the object of an ordinal
+     * @param size      the amount of ordinals given
+     * @param exists    false for an ordinal that has been removed elsewhere, like a removed edge of the graph
+     */
+    protected IdentityOrdinals(ToIntFunction<T> ordinalOf, IntFunction<T> objectOf, IntSupplier size, IntPredicate exists){
+        super(0);
+        this.ordinalOf = ordinalOf;
+        this.objectOf = objectOf;
+        this.size = size;
+        this.exists = exists;
+        this.removed = new BitSet();
+    }
+
+    // the edges of a graph as Integers, where the removed edges of the graph have no ordinal
+    protected static IdentityOrdinals<Integer> edgesOf(CompactGraph graph){
+        return new IdentityOrdinals<>(e -> e, e -> e, graph::edgeCount, graph::exists);
+    }
+
+    protected static IdentityOrdinals<Vertex<Integer>> verticesOf(CompactGraph graph){
+        return new IdentityOrdinals<>(v -> v instanceof OrdinalVertex vertex && vertex.belongsTo(graph) ? vertex.ordinal() : -1,
+                v -> new OrdinalVertex(graph, v), graph::vertexCount, v -> true);
+    }
+
+    @Override
+    protected int get(T object){
+        int ordinal = object == null ? -1 : ordinalOf.applyAsInt(object);
+        return ordinal >= 0 && ordinal < size.getAsInt() && !removed.get(ordinal) && exists.test(ordinal) ? ordinal : -1;
+    }
+
+    // The object must be the next ordinal, which the graph gives to the edge or vertex added after it
+    @Override
+    protected int add(T object){
+        int ordinal = ordinalOf.applyAsInt(object);
+        if(ordinal != size.getAsInt()) throw new RuntimeException("Only the next ordinal can be added to this network!");
+        return ordinal;
+    }
+
+    @Override
+    protected void remove(T object){
+        int ordinal = get(object);
+        if(ordinal >= 0) removed.set(ordinal);
+    }
+
+    @Override
+    protected T objectAt(int ordinal){
+        return removed.get(ordinal) || !exists.test(ordinal) ? null : objectOf.apply(ordinal);
+    }
+
+    @Override
+    protected int size(){
+        return size.getAsInt();
+    }
+
+}
@@ -0,0 +1,86 @@
+package FlowNetwork;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+    /*
+    Uses M = L L^T, where L is the Cholesky factor of A restricted to the pattern of the lower triangle of A. No fill-in
+    is allowed, so L takes exactly as much memory as A, while M is much closer to A than its diagonal is.
+
+    Row i of L is computed from the rows k < i it has entries in:
+        L[i][k] = (A[i][k] - sum over j < k of L[i][j] * L[k][j]) / L[k][k]
+        L[i][i] = sqrt(A[i][i] - sum over j < i of L[i][j]^2)
+    For the grounded Laplacian this always exists in exact arithmetic. Should rounding make a diagonal non-positive,
+    the diagonal of A is used for that row instead.
+     */
+public class IncompleteCholesky implements Preconditioner {
+
+    private final int n;
+    private final int[] rowStart;
+    private final int[] columnIndex;
+    private final double[] values;
+
+    protected IncompleteCholesky(SparseMatrix a){
+        this.n = a.n;
+        // row i of the lower triangle is column i of a above the diagonal, sorted with the diagonal last
+        this.rowStart = new int[n + 1];
+        for(int i = 0; i < n; i++){
+            int count = 1;
+            for(int p = a.columnStart.get(i); p < a.columnStart.get(i + 1); p++) if(a.rowIndex.get(p) < i) count++;
+            rowStart[i + 1] = rowStart[i] + count;}
+        this.columnIndex = new int[rowStart[n]];
+        this.values = new double[rowStart[n]];
+        long[] row = new long[n];
+        for(int i = 0; i < n; i++){
+            int size = 0;
+            double diagonal = 0;
+            for(int p = a.columnStart.get(i); p < a.columnStart.get(i + 1); p++){
+                if(a.rowIndex.get(p) < i) row[size++] = ((long) a.rowIndex.get(p) << 32) | p;
+                else if(a.rowIndex.get(p) == i) diagonal += a.values.get(p);}
+            Arrays.sort(row, 0, size);
+            for(int q = 0; q < size; q++){
+                columnIndex[rowStart[i] + q] = (int) (row[q] >>> 32);
+                values[rowStart[i] + q] = a.values.get((int) row[q]);}
+            columnIndex[rowStart[i + 1] - 1] = i;
+            values[rowStart[i + 1] - 1] = diagonal;
+        }
+        factorize();
+    }
+
+    private void factorize(){
+        int[] positionInRow = new int[n];
+        Arrays.fill(positionInRow, -1);
+        for(int i = 0; i < n; i++){
+            int last = rowStart[i + 1] - 1;
+            for(int p = rowStart[i]; p < last; p++) positionInRow[columnIndex[p]] = p;
+            for(int p = rowStart[i]; p < last; p++){
+                int k = columnIndex[p];
+                double sum = values[p];
+                int kLast = rowStart[k + 1] - 1;
+                for(int q = rowStart[k]; q < kLast; q++){
+                    int at = positionInRow[columnIndex[q]];
+                    if(at >= 0) sum -= values[at] * values[q];}
+                values[p] = sum / values[kLast];
+            }
+            double diagonal = values[last];
+            for(int p = rowStart[i]; p < last; p++) diagonal -= values[p] * values[p];
+            values[last] = Math.sqrt(diagonal > 0 ? diagonal : Math.abs(values[last]) + Double.MIN_NORMAL);
+            for(int p = rowStart[i]; p < last; p++) positionInRow[columnIndex[p]] = -1;
+        }
+    }
+
+    @Override
+    public void apply(DoubleBuffer r, DoubleBuffer z){
+        for(int i = 0; i < n; i++){
+            double sum = r.get(i);
+            int last = rowStart[i + 1] - 1;
+            for(int p = rowStart[i]; p < last; p++) sum -= values[p] * z.get(columnIndex[p]);
+            z.put(i, sum / values[last]);}
+        for(int i = n - 1; i >= 0; i--){
+            int last = rowStart[i + 1] - 1;
+            double zi = z.get(i) / values[last];
+            z.put(i, zi);
+            for(int p = rowStart[i]; p < last; p++) z.put(columnIndex[p], z.get(columnIndex[p]) - values[p] * zi);}
+    }
+
+}
@@ -1,7 +1,10 @@
 package FlowNetwork;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Function;
 
 // Linear Acyclic Determinate Finite Automata
 // M = < Q, A, D, s, f >
@@ -32,6 +35,116 @@ public class LADFA<T> {
         return states;
     }
 
+    /**
+     * @return true if no sequence of transitions leads back to the state it started in
+     */
+    public boolean isAcyclic(){
+        return topologicalOrder() != null;
+    }
+
+    /**
+     * Counts the paths from the start to the final state by dynamic programming over the states in topological order,
+     * in time linear in the amount of transitions. The amount can grow exponentially, so it is counted exactly
+     */
+    public BigInteger pathCount(){
+        return pathsFromStart(acyclicOrder()).getOrDefault(states.get(f), BigInteger.ZERO);
+    }
+
+    /**
+     * @return for every transition the amount of paths from the start to the final state that pass through it
+     */
+    public HashMap<T, BigInteger> pathsThrough(){
+        ArrayList<State<T>> order = acyclicOrder();
+        HashMap<State<T>, BigInteger> fromStart = pathsFromStart(order);
+        // the paths to the final state are counted backwards, through the same transitions
+        HashMap<State<T>, BigInteger> toFinal = new HashMap<>();
+        State<T> finalState = states.get(f);
+        for(int i = order.size() - 1; i >= 0; i--){
+            State<T> state = order.get(i);
+            if(state == finalState){
+                toFinal.put(state, BigInteger.ONE);
+                continue;}
+            BigInteger paths = BigInteger.ZERO;
+            for(State<T> next : state.getTransitions().values()) paths = paths.add(toFinal.getOrDefault(next, BigInteger.ZERO));
+            toFinal.put(state, paths);
+        }
+        HashMap<T, BigInteger> pathsThrough = new HashMap<>();
+        for(State<T> state : order){
+            BigInteger before = fromStart.get(state);
+            if(before == null || state == finalState) continue;
+            state.getTransitions().forEach((t, next) -> {
+                BigInteger paths = before.multiply(toFinal.get(next));
+                if(paths.signum() > 0) pathsThrough.merge(t, paths, BigInteger::add);});
+        }
+        return pathsThrough;
+    }
+
+    /**
+     * @return the smallest sum of the weights of the transitions of a path from the start to the final state, or
+     * infinity if there is no path
+     */
+    public double minimumPathWeight(Function<T, Double> weightOf){
+        return extremePathWeight(weightOf, true);
+    }
+
+    /**
+     * @return the largest sum of the weights of the transitions of a path from the start to the final state, or
+     * -infinity if there is no path
+     */
+    public double maximumPathWeight(Function<T, Double> weightOf){
+        return extremePathWeight(weightOf, false);
+    }
+
+    private double extremePathWeight(Function<T, Double> weightOf, boolean minimum){
+        State<T> finalState = states.get(f);
+        HashMap<State<T>, Double> best = new HashMap<>();
+        best.put(states.get(s), 0.0);
+        for(State<T> state : acyclicOrder()){
+            Double weight = best.get(state);
+            if(weight == null || state == finalState) continue;
+            state.getTransitions().forEach((t, next) -> {
+                double through = weight + weightOf.apply(t);
+                Double known = best.get(next);
+                if(known == null || (minimum ? through < known : through > known)) best.put(next, through);});
+        }
+        Double weight = best.get(finalState);
+        return weight != null ? weight : minimum ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+    }
+
+    // the amount of paths from the start to every state, where a path ends at the final state
+    private HashMap<State<T>, BigInteger> pathsFromStart(ArrayList<State<T>> order){
+        State<T> finalState = states.get(f);
+        HashMap<State<T>, BigInteger> paths = new HashMap<>();
+        paths.put(states.get(s), BigInteger.ONE);
+        for(State<T> state : order){
+            BigInteger before = paths.get(state);
+            if(before == null || state == finalState) continue;
+            for(State<T> next : state.getTransitions().values()) paths.merge(next, before, BigInteger::add);
+        }
+        return paths;
+    }
+
+    private ArrayList<State<T>> acyclicOrder(){
+        ArrayList<State<T>> order = topologicalOrder();
+        if(order == null) throw new RuntimeException("The transitions of the automaton contain a cycle!");
+        return order;
+    }
+
+    // The states ordered so that every transition leads to a later state, by the algorithm of Kahn. Null if there is
+    // a cycle, since the states on it never lose all their incoming transitions
+    private ArrayList<State<T>> topologicalOrder(){
+        HashMap<State<T>, Integer> incoming = new HashMap<>();
+        for(State<T> state : states) incoming.putIfAbsent(state, 0);
+        for(State<T> state : states)
+            for(State<T> next : state.getTransitions().values()) incoming.merge(next, 1, Integer::sum);
+        ArrayList<State<T>> order = new ArrayList<>();
+        for(State<T> state : states) if(incoming.get(state) == 0) order.add(state);
+        for(int i = 0; i < order.size(); i++)
+            for(State<T> next : order.get(i).getTransitions().values())
+                if(incoming.merge(next, -1, Integer::sum) == 0) order.add(next);
+        return order.size() == incoming.size() ? order : null;
+    }
+
     public boolean parse(ArrayList<T> string){
         State<T> currentState = this.states.get(this.s);
         for(T t : string)
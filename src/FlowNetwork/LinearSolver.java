@@ -0,0 +1,36 @@
+package FlowNetwork;
+
+/*
+    Solves A x = b for a fixed symmetric positive definite matrix A, either directly through a factorization (SparseLDL)
+    or iteratively (ConjugateGradient).
+ */
+public interface LinearSolver {
+
+    /**
+     * @param b the right hand side, which is overwritten by the solution x
+     */
+    void solve(double[] b);
+
+    /**
+     * Solves A X = B for several right hand sides at once
+     * @param b the columns of B, which are overwritten by the columns of X
+     */
+    default void solve(double[][] b){
+        for(double[] column : b) solve(column);
+    }
+
+    /**
+     * @return the amount of iterations used by all solves so far, 0 for a direct solver
+     */
+    default int iterations(){
+        return 0;
+    }
+
+    /**
+     * @return false if any solve so far stopped before reaching its tolerance
+     */
+    default boolean converged(){
+        return true;
+    }
+
+}
@@ -0,0 +1,121 @@
+package FlowNetwork;
+
+import Jama.LUDecomposition;
+import Jama.Matrix;
+
+    /*
+    Solves with a matrix whose factorization is out of date by a few changed edge weights, without factorizing it again.
+
+    Changing the conductance of an edge between the rows a and b by g changes the matrix by g * u * u^T, where u is 1 in
+    row a and -1 in row b. With the changes collected in the columns of U and the diagonal of G the Woodbury identity gives
+        (A + U G U^T)^-1 = A^-1 - Z (G^-1 + U^T Z)^-1 Z^T     where Z = A^-1 U
+    so a solve costs one solve with the old factorization, a multiplication by Z and a solve with the small capacitance
+    matrix G^-1 + U^T Z. Every change costs one solve for its column of Z. When more than MAX_RANK edges have changed,
+    the solves through Z cost more than a new factorization, so update refuses the change and the caller factorizes.
+     */
+public class LowRankUpdate implements LinearSolver {
+
+    private static final int MAX_RANK = 16;
+
+    private final SparseLDL factorization;
+    private final int[] rowA, rowB;
+    private final double[] change;
+    private final double[][] z;
+    private int rank;
+    private LUDecomposition capacitance;
+
+    /**
+     * @param factorization a factorization of the matrix before any of the changes
+     */
+    protected LowRankUpdate(SparseLDL factorization){
+        this.factorization = factorization;
+        this.rowA = new int[MAX_RANK];
+        this.rowB = new int[MAX_RANK];
+        this.change = new double[MAX_RANK];
+        this.z = new double[MAX_RANK][];
+    }
+
+    /**
+     * Adds the change g * u * u^T to the matrix, where u is 1 in row a and -1 in row b. A row of -1 is left out of u
+     * @return false if the change is not worth correcting for, after which this must not be used anymore
+     */
+    protected boolean update(int a, int b, double g){
+        if(g == 0 || (a < 0 && b < 0)) return true;
+        for(int k = 0; k < rank; k++)
+            if(rowA[k] == a && rowB[k] == b){
+                double before = change[k];
+                change[k] += g;
+                // the weight is back at its factorized value, so the change is dropped
+                if(Math.abs(change[k]) <= 1e-12 * Math.abs(before)) remove(k);
+                return updateCapacitance();}
+        if(rank == MAX_RANK) return false;
+        double[] column = new double[factorization.size()];
+        if(a >= 0) column[a] = 1;
+        if(b >= 0) column[b] = -1;
+        factorization.solve(column);
+        rowA[rank] = a;
+        rowB[rank] = b;
+        change[rank] = g;
+        z[rank++] = column;
+        return updateCapacitance();
+    }
+
+    private void remove(int k){
+        rank--;
+        rowA[k] = rowA[rank];
+        rowB[k] = rowB[rank];
+        change[k] = change[rank];
+        z[k] = z[rank];
+        z[rank] = null;
+    }
+
+    // u^T x for the k:th change
+    private double project(int k, double[] x){
+        return (rowA[k] >= 0 ? x[rowA[k]] : 0) - (rowB[k] >= 0 ? x[rowB[k]] : 0);
+    }
+
+    // returns false if the capacitance matrix is singular
+    private boolean updateCapacitance(){
+        if(rank == 0){
+            this.capacitance = null;
+            return true;}
+        double[][] c = new double[rank][rank];
+        for(int i = 0; i < rank; i++){
+            for(int j = 0; j < rank; j++) c[i][j] = project(i, z[j]);
+            c[i][i] += 1 / change[i];}
+        this.capacitance = new LUDecomposition(new Matrix(c));
+        return capacitance.isNonsingular();
+    }
+
+    @Override
+    public void solve(double[] b){
+        factorization.solve(b);
+        correct(b);
+    }
+
+    @Override
+    public void solve(double[][] b){
+        factorization.solve(b);
+        for(double[] column : b) correct(column);
+    }
+
+    // turns a solution with the old factorization into one with the changed matrix
+    private void correct(double[] b){
+        if(rank == 0) return;
+        double[] y = new double[rank];
+        for(int k = 0; k < rank; k++) y[k] = project(k, b);
+        double[] t = capacitance.solve(new Matrix(y, rank)).getColumnPackedCopy();
+        for(int k = 0; k < rank; k++){
+            double tk = t[k];
+            double[] zk = z[k];
+            for(int i = 0; i < b.length; i++) b[i] -= zk[i] * tk;}
+    }
+
+    /**
+     * @return the amount of changes that are solved through the Woodbury identity instead of the factorization
+     */
+    public int rank(){
+        return rank;
+    }
+
+}
@@ -0,0 +1,128 @@
+package FlowNetwork;
+
+import java.util.Arrays;
+
+    /*
+    Orders the rows of a symmetric sparse matrix so that its factorization creates few new entries (fill-in).
+
+    Eliminating a vertex from the graph of a matrix connects all of its remaining neighbours to each other, which is
+    exactly the fill-in the factorization will create. The vertex with the fewest neighbours is therefore always
+    eliminated next. Neighbour lists are rebuilt on elimination and the vertices are kept in a heap by their degree,
+    where outdated entries are skipped instead of removed.
+     */
+public class MinimumDegree {
+
+    private MinimumDegree(){}
+
+    /**
+     * @param a a symmetric matrix
+     * @return order[k] is the row of a that is eliminated as the k:th
+     */
+    protected static int[] order(SparseMatrix a){
+        return order(neighbours(a));
+    }
+
+    // the graph of a symmetric matrix, where row i is connected to every other row with an entry in column i
+    protected static int[][] neighbours(SparseMatrix a){
+        int[][] neighbours = new int[a.n][];
+        for(int j = 0; j < a.n; j++){
+            int[] list = new int[a.columnStart.get(j + 1) - a.columnStart.get(j)];
+            int size = 0;
+            for(int p = a.columnStart.get(j); p < a.columnStart.get(j + 1); p++)
+                if(a.rowIndex.get(p) != j) list[size++] = a.rowIndex.get(p);
+            neighbours[j] = Arrays.copyOf(list, size);}
+        return neighbours;
+    }
+
+    /**
+     * @param neighbours the neighbours of every vertex of a graph, which are overwritten
+     * @return order[k] is the vertex that is eliminated as the k:th
+     */
+    protected static int[] order(int[][] neighbours){
+        int n = neighbours.length;
+        int[] degree = new int[n];
+        for(int j = 0; j < n; j++) degree[j] = neighbours[j].length;
+
+        LongHeap heap = new LongHeap(2 * n);
+        for(int j = 0; j < n; j++) heap.push(key(degree[j], j));
+        boolean[] eliminated = new boolean[n];
+        int[] mark = new int[n];
+        int stamp = 0;
+        int[] order = new int[n];
+        int[] remaining = new int[n];
+        int[] merged = new int[n];
+        for(int k = 0; k < n; k++){
+            int v;
+            do{
+                long top = heap.pop();
+                v = (int) top;
+                if(!eliminated[v] && degree[v] == (int) (top >>> 32)) break;
+            } while(true);
+            order[k] = v;
+            eliminated[v] = true;
+            int count = 0;
+            for(int u : neighbours[v]) if(!eliminated[u]) remaining[count++] = u;
+            neighbours[v] = null;
+            for(int r = 0; r < count; r++){
+                int u = remaining[r];
+                stamp++;
+                int size = 0;
+                mark[u] = stamp;
+                for(int w : neighbours[u])
+                    if(!eliminated[w] && mark[w] != stamp){
+                        mark[w] = stamp;
+                        merged[size++] = w;}
+                for(int q = 0; q < count; q++){
+                    int w = remaining[q];
+                    if(mark[w] != stamp){
+                        mark[w] = stamp;
+                        merged[size++] = w;}}
+                neighbours[u] = Arrays.copyOf(merged, size);
+                degree[u] = size;
+                heap.push(key(size, u));
+            }
+        }
+        return order;
+    }
+
+    private static long key(int degree, int vertex){
+        return ((long) degree << 32) | vertex;
+    }
+
+    // binary min-heap of primitive longs
+    private static class LongHeap {
+        private long[] heap;
+        private int size;
+
+        private LongHeap(int capacity){
+            this.heap = new long[Math.max(capacity, 1)];
+        }
+
+        private void push(long value){
+            if(size == heap.length) heap = Arrays.copyOf(heap, 2 * size);
+            int i = size++;
+            while(i > 0){
+                int parent = (i - 1) / 2;
+                if(heap[parent] <= value) break;
+                heap[i] = heap[parent];
+                i = parent;}
+            heap[i] = value;
+        }
+
+        private long pop(){
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            while(true){
+                int child = 2 * i + 1;
+                if(child >= size) break;
+                if(child + 1 < size && heap[child + 1] < heap[child]) child++;
+                if(heap[child] >= last) break;
+                heap[i] = heap[child];
+                i = child;}
+            heap[i] = last;
+            return top;
+        }
+    }
+
+}
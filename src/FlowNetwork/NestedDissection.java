@@ -0,0 +1,114 @@
+package FlowNetwork;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+    /*
+    Orders the rows of a large symmetric sparse matrix for factorization by nested dissection.
+
+    A set of vertices that separates the graph into two parts is ordered last. Eliminating the two parts can then never
+    create fill-in between them, so each part is ordered the same way on its own. The separator is the middle level of
+    a breadth first search started from a vertex far out in the graph, which for a mesh is a line across it. Parts that
+    are small enough are ordered by MinimumDegree instead, which gives less fill-in on small graphs.
+     */
+public class NestedDissection {
+
+    private static final int LEAF_SIZE = 256;
+
+    private NestedDissection(){}
+
+    /**
+     * @param a a symmetric matrix
+     * @return order[k] is the row of a that is eliminated as the k:th
+     */
+    protected static int[] order(SparseMatrix a){
+        int[][] neighbours = MinimumDegree.neighbours(a);
+        int n = neighbours.length;
+        int[] order = new int[n];
+        int[] owner = new int[n];
+        int[] level = new int[n];
+        int[] local = new int[n];
+        int[] queue = new int[n];
+        int part = 0;
+        ArrayDeque<int[]> parts = new ArrayDeque<>();
+        ArrayDeque<Integer> starts = new ArrayDeque<>();
+        int[] all = new int[n];
+        for(int v = 0; v < n; v++) all[v] = v;
+        parts.push(all);
+        starts.push(0);
+        while(!parts.isEmpty()){
+            int[] vertices = parts.pop();
+            int start = starts.pop();
+            part++;
+            for(int v : vertices) owner[v] = part;
+            if(vertices.length <= LEAF_SIZE){
+                orderLeaf(vertices, start, neighbours, owner, part, local, order);
+                continue;}
+
+            // finds a vertex far out by searching twice, then takes the levels of a search from it
+            int reached = levels(vertices[0], vertices, neighbours, owner, part, level, queue);
+            if(reached < vertices.length){
+                int[] component = Arrays.copyOf(queue, reached);
+                int[] rest = new int[vertices.length - reached];
+                int r = 0;
+                for(int v : vertices) if(level[v] < 0) rest[r++] = v;
+                parts.push(component);
+                starts.push(start);
+                parts.push(rest);
+                starts.push(start + reached);
+                continue;}
+            levels(queue[reached - 1], vertices, neighbours, owner, part, level, queue);
+            levels(queue[reached - 1], vertices, neighbours, owner, part, level, queue);
+
+            int middle = level[queue[reached / 2]];
+            int before = 0, separatorSize = 0;
+            for(int v : vertices){
+                if(level[v] < middle) before++;
+                if(level[v] == middle) separatorSize++;}
+            int after = vertices.length - before - separatorSize;
+            if(before == 0 || after == 0){
+                orderLeaf(vertices, start, neighbours, owner, part, local, order);
+                continue;}
+            int[] first = new int[before], second = new int[after];
+            int f = 0, s = 0, p = start + before + after;
+            for(int v : vertices){
+                if(level[v] < middle) first[f++] = v;
+                else if(level[v] > middle) second[s++] = v;
+                else order[p++] = v;}
+            parts.push(first);
+            starts.push(start);
+            parts.push(second);
+            starts.push(start + before);
+        }
+        return order;
+    }
+
+    // Breadth first search within the part. The reached vertices are left in queue in the order they were reached
+    private static int levels(int root, int[] vertices, int[][] neighbours, int[] owner, int part, int[] level, int[] queue){
+        for(int v : vertices) level[v] = -1;
+        int head = 0, tail = 0;
+        queue[tail++] = root;
+        level[root] = 0;
+        while(head < tail){
+            int v = queue[head++];
+            for(int w : neighbours[v]){
+                if(owner[w] != part || level[w] >= 0) continue;
+                level[w] = level[v] + 1;
+                queue[tail++] = w;}
+        }
+        return tail;
+    }
+
+    private static void orderLeaf(int[] vertices, int start, int[][] neighbours, int[] owner, int part, int[] local, int[] order){
+        for(int i = 0; i < vertices.length; i++) local[vertices[i]] = i;
+        int[][] subgraph = new int[vertices.length][];
+        for(int i = 0; i < vertices.length; i++){
+            int[] list = new int[neighbours[vertices[i]].length];
+            int size = 0;
+            for(int w : neighbours[vertices[i]]) if(owner[w] == part) list[size++] = local[w];
+            subgraph[i] = Arrays.copyOf(list, size);}
+        int[] leafOrder = MinimumDegree.order(subgraph);
+        for(int i = 0; i < vertices.length; i++) order[start + i] = vertices[leafOrder[i]];
+    }
+
+}
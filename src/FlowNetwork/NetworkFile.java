@@ -0,0 +1,228 @@
+package FlowNetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+    /*
+    The binary format of a saved FlowNetwork. A file holds the CompactGraph of the network, its pressure sources and
+    optionally the factorizations of the systems of nodal analysis, in sections that start at a multiple of 8 bytes:
+
+        header          "FLOWNETW", version, analysis, vertices, edges, sources, factorizations, padded to 64 bytes
+        graph           from and to of every edge (int), weight of every edge (double), offset of every vertex and one
+                        more (int), the edges of every row (int)
+        sources         edge, direction (int) and pressure (double) of every source
+        factorizations  fingerprint (long), n, nonZeros (int), order, parent, columnStart (int), rowIndex (int),
+                        values (double), diagonal (double) of every factorization
+
+    Everything is little endian. The graph is written with the rows of its vertices, so that the sections can be mapped
+    and used by the graph as they are: reading a network maps the file and reads only the header, the sources and the
+    factorizations. A mapped section is one buffer and holds at most 2^31 - 1 bytes, which is about 268 million edges.
+    The factorizations are copied to the heap, where SparseLDL keeps them.
+
+    A factorization belongs to the Laplacian with the same fingerprint. The blocks of a loaded network are found again,
+    and the system of a block takes the saved factorization of its Laplacian if there is one, so a factorization that no
+    longer matches its block is never used. The version grows with every change of the format, and a file of a newer
+    version than this one is refused.
+     */
+public class NetworkFile {
+
+    private static final long MAGIC = 0x5754454E574F4C46L; // "FLOWNETW" read little endian
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    final FlowNetwork.Analysis analysis;
+    final CompactGraph graph;
+    final int[] sourceEdges, sourceDirections;
+    final double[] pressures;
+    final Map<Long, SparseLDL> factorizations;
+
+    protected NetworkFile(FlowNetwork.Analysis analysis, CompactGraph graph, int[] sourceEdges, int[] sourceDirections,
+                          double[] pressures, Map<Long, SparseLDL> factorizations){
+        this.analysis = analysis;
+        this.graph = graph;
+        this.sourceEdges = sourceEdges;
+        this.sourceDirections = sourceDirections;
+        this.pressures = pressures;
+        this.factorizations = factorizations;
+    }
+
+    protected void write(Path path) throws IOException{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            Output out = new Output(channel);
+            int m = graph.edgeCount(), n = graph.vertexCount();
+            out.putLong(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(analysis.ordinal());
+            out.putInt(n);
+            out.putInt(m);
+            out.putInt(sourceEdges.length);
+            out.putInt(factorizations.size());
+            out.align(HEADER);
+            IntBuffer offset = graph.offsets(), incident = graph.incidents();
+            for(int e = 0; e < m; e++) out.putInt(graph.from(e));
+            out.align(8);
+            for(int e = 0; e < m; e++) out.putInt(graph.to(e));
+            out.align(8);
+            for(int e = 0; e < m; e++) out.putDouble(graph.weight(e));
+            for(int v = 0; v <= n; v++) out.putInt(offset.get(v));
+            out.align(8);
+            for(int i = 0; i < offset.get(n); i++) out.putInt(incident.get(i));
+            out.align(8);
+            for(int s = 0; s < sourceEdges.length; s++){
+                out.putInt(sourceEdges[s]);
+                out.putInt(sourceDirections[s]);
+                out.putDouble(pressures[s]);}
+            for(Map.Entry<Long, SparseLDL> entry : factorizations.entrySet()){
+                SparseLDL ldl = entry.getValue();
+                out.putLong(entry.getKey());
+                out.putInt(ldl.n);
+                out.putInt(ldl.nonZeros());
+                out.putInts(ldl.order);
+                out.putInts(ldl.parent);
+                out.putInts(ldl.columnStart);
+                out.putInts(ldl.rowIndex);
+                out.putDoubles(ldl.values);
+                out.putDoubles(ldl.diagonal);}
+            out.flush();
+        }
+    }
+
+    /**
+     * Maps a network file. The graph keeps the mapped sections after the file is closed
+     * @param storage where the arrays of the graph are copied to when it changes
+     */
+    protected static NetworkFile read(Path path, Storage storage) throws IOException{
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            Input in = new Input(channel);
+            ByteBuffer header = in.section(HEADER);
+            if(header.getLong() != MAGIC) throw new RuntimeException("This is not a network file!");
+            int version = header.getInt();
+            if(version > VERSION) throw new RuntimeException("The network file is of a newer version than this library!");
+            FlowNetwork.Analysis analysis = FlowNetwork.Analysis.values()[header.getInt()];
+            int n = header.getInt(), m = header.getInt(), sources = header.getInt(), factorizationCount = header.getInt();
+            IntBuffer from = in.section(4L * m).asIntBuffer();
+            IntBuffer to = in.section(4L * m).asIntBuffer();
+            DoubleBuffer weight = in.section(8L * m).asDoubleBuffer();
+            IntBuffer offset = in.section(4L * (n + 1)).asIntBuffer();
+            IntBuffer incident = in.section(4L * offset.get(n)).asIntBuffer();
+            CompactGraph graph = new CompactGraph(n, m, from, to, weight, offset, incident, storage);
+            int[] sourceEdges = new int[sources], sourceDirections = new int[sources];
+            double[] pressures = new double[sources];
+            ByteBuffer sourceSection = in.section(16L * sources);
+            for(int s = 0; s < sources; s++){
+                sourceEdges[s] = sourceSection.getInt();
+                sourceDirections[s] = sourceSection.getInt();
+                pressures[s] = sourceSection.getDouble();}
+            HashMap<Long, SparseLDL> factorizations = new HashMap<>();
+            for(int f = 0; f < factorizationCount; f++){
+                ByteBuffer sizes = in.section(16);
+                long fingerprint = sizes.getLong();
+                int size = sizes.getInt(), nonZeros = sizes.getInt();
+                int[] order = in.ints(size), parent = in.ints(size), columnStart = in.ints(size + 1);
+                int[] rowIndex = in.ints(nonZeros);
+                double[] values = in.doubles(nonZeros), diagonal = in.doubles(size);
+                factorizations.put(fingerprint, new SparseLDL(order, parent, columnStart, rowIndex, values, diagonal));}
+            return new NetworkFile(analysis, graph, sourceEdges, sourceDirections, pressures, factorizations);
+        }
+    }
+
+    // writes through one buffer, which is emptied into the channel whenever it is full
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long position;
+
+        private Output(FileChannel channel){
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(1 << 16).order(ORDER);
+        }
+
+        private void room(int bytes) throws IOException{
+            if(buffer.remaining() < bytes) flush();
+        }
+
+        private void putInt(int value) throws IOException{
+            room(4);
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        private void putLong(long value) throws IOException{
+            room(8);
+            buffer.putLong(value);
+            position += 8;
+        }
+
+        private void putDouble(double value) throws IOException{
+            room(8);
+            buffer.putDouble(value);
+            position += 8;
+        }
+
+        // an array as a section of its own
+        private void putInts(int[] values) throws IOException{
+            for(int value : values) putInt(value);
+            align(8);
+        }
+
+        private void putDoubles(double[] values) throws IOException{
+            for(double value : values) putDouble(value);
+        }
+
+        // pads with zeros up to the next multiple of the alignment
+        private void align(int alignment) throws IOException{
+            while(position % alignment != 0){
+                room(1);
+                buffer.put((byte) 0);
+                position++;}
+        }
+
+        private void flush() throws IOException{
+            buffer.flip();
+            while(buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    // maps the sections of a file one after another
+    private static class Input {
+        private final FileChannel channel;
+        private long position;
+
+        private Input(FileChannel channel){
+            this.channel = channel;
+        }
+
+        private ByteBuffer section(long bytes) throws IOException{
+            if(bytes > Integer.MAX_VALUE) throw new RuntimeException("A section of the network file is larger than 2 GB!");
+            if(position + bytes > channel.size()) throw new RuntimeException("The network file is cut short!");
+            ByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(ORDER);
+            // every section starts at a multiple of 8 bytes
+            this.position += (bytes + 7) & ~7L;
+            return section;
+        }
+
+        private int[] ints(int length) throws IOException{
+            int[] values = new int[length];
+            section(4L * length).asIntBuffer().get(values);
+            return values;
+        }
+
+        private double[] doubles(int length) throws IOException{
+            double[] values = new double[length];
+            section(8L * length).asDoubleBuffer().get(values);
+            return values;
+        }
+    }
+
+}
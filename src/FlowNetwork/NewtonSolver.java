@@ -0,0 +1,258 @@
+package FlowNetwork;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+    /*
+    Solves the flows of a network where some edges are NonlinearElements, by Newton's method on the flows through the
+    edges and the potentials of the vertices together, which is the global gradient method of pipe network analysis.
+
+    An edge b with the drop f(q) = R q + h(q), of its weight R and its element h, is linearized at the flow q_k of the
+    last iteration as a conductance in parallel with a flow, like the companion models of a TransientSimulation:
+        q = G v + c      G = 1 / f'(q_k)      c = q_k - G f(q_k)
+    for the pressure v over the edge, which is a resistor for an edge without element. The junction rule for these flows
+    is a Laplacian of the conductances, and solving it gives the potentials, the pressures and the next flows q = G v + c,
+    which obey the junction rule exactly. The residual is what the pressures still miss of the drops of their flows,
+    relative to the largest pressure of the sources, and is quadratically small once the flows are close.
+
+    The wires and sources are contracted by a ConstraintForest as in a TransientSimulation, so the Laplacian only
+    changes its values from one iteration to the next. The fill reducing order and the elimination tree of a SparseLDL
+    are computed once, and every iteration only writes the new conductances into the same matrix and factorizes it
+    numerically. An iterative solver of the SolverOptions is made anew for every iteration instead.
+
+    The flows stay from one solve to the next, so a solve after a change of the pressures starts from the last solution
+    and needs few iterations. The very first solve starts from no flow, where the elements are taken as resistors of
+    their drop at a flow of 1. Where the derivative of a drop is 0, as for a power law without flow, a small multiple of
+    that resistance keeps the conductance finite.
+
+    All sources act at once, as ideal sources with their weight in parallel, as in a TransientSimulation. The flows of a
+    nonlinear network can not be superposed, so there is no flow of a single source here.
+     */
+public class NewtonSolver<T> {
+
+    private static final double DERIVATIVE_FLOOR = 1e-9;
+
+    private final Ordinals<T> edges;
+    private final double tolerance;
+    private final int maxIterations;
+
+    // the edges with a conductance, and where it is added in the matrix, or -1 at a grounded end
+    private final int[] branch, from, to;
+    private final double[] resistance, floor;
+    private final NonlinearElement[] element;
+    private final int[] atFrom, atTo, between, betweenTransposed;
+    private final double[] flow, conductance, offsetFlow;
+
+    private final ConstraintForest forest;
+    private final SolverOptions options;
+    private final SparseMatrix laplacian;
+    private final SparseLDL factorization;
+    private final double[] potentials, outflow, flows;
+    private boolean started;
+    private int factorizations;
+    private Convergence convergence;
+
+    /**
+     * @param elements      the element of every edge by its ordinal, or null for a resistor, wire or source
+     * @param sources       the ordinals of the source edges, with the vertex of their positive pressure and their pressure
+     * @param tolerance     the largest residual relative to the largest pressure of the sources
+     * @param maxIterations the most iterations of one solve
+     */
+    protected NewtonSolver(CompactGraph graph, Ordinals<T> edges, NonlinearElement[] elements, int[] sources,
+                           int[] directions, double[] pressures, double tolerance, int maxIterations,
+                           SolverOptions options){
+        if(!(tolerance > 0) || maxIterations < 1) throw new RuntimeException("The tolerance and the iterations must be positive!");
+        this.edges = edges;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        this.options = options;
+        int m = graph.edgeCount();
+        boolean[] isBranch = new boolean[m];
+        for(int e = 0; e < m; e++)
+            isBranch[e] = graph.exists(e) && graph.from(e) != graph.to(e) && (elements[e] != null || graph.weight(e) != 0);
+        for(int e : sources){
+            if(elements[e] != null) throw new RuntimeException("A pressure source can not be a nonlinear element!");
+            isBranch[e] = false;}
+        this.forest = new ConstraintForest(graph, isBranch, sources, directions, pressures);
+        int branches = 0;
+        for(int e = 0; e < m; e++) if(isBranch[e]) branches++;
+        this.branch = new int[branches];
+        this.from = new int[branches];
+        this.to = new int[branches];
+        this.resistance = new double[branches];
+        this.floor = new double[branches];
+        this.element = new NonlinearElement[branches];
+        for(int e = 0, b = 0; e < m; e++){
+            if(!isBranch[e]) continue;
+            branch[b] = e;
+            from[b] = graph.from(e);
+            to[b] = graph.to(e);
+            resistance[b] = graph.weight(e);
+            element[b] = elements[e];
+            floor[b] = DERIVATIVE_FLOOR * (resistance[b] + (element[b] == null ? 0 : element[b].pressureDrop(1)));
+            b++;}
+        this.flow = new double[branches];
+        this.conductance = new double[branches];
+        this.offsetFlow = new double[branches];
+
+        int n = forest.unknowns();
+        int[] node = forest.node;
+        SparseMatrix.Assembly unit = new SparseMatrix.Assembly(n, options.storage);
+        for(int b = 0; b < branches; b++){
+            int a = node[from[b]], c = node[to[b]];
+            if(a == c) continue;
+            if(a >= 0) unit.add(a, a, 1);
+            if(c >= 0) unit.add(c, c, 1);
+            if(a >= 0 && c >= 0) unit.addSymmetric(a, c, -1);}
+        this.laplacian = unit.toMatrix();
+        this.factorization = n == 0 || options.method != SolverOptions.Method.DIRECT ? null : new SparseLDL(laplacian);
+        this.atFrom = new int[branches];
+        this.atTo = new int[branches];
+        this.between = new int[branches];
+        this.betweenTransposed = new int[branches];
+        for(int b = 0; b < branches; b++){
+            int a = node[from[b]], c = node[to[b]];
+            boolean within = a == c;
+            atFrom[b] = a >= 0 && !within ? laplacian.entryOf(a, a) : -1;
+            atTo[b] = c >= 0 && !within ? laplacian.entryOf(c, c) : -1;
+            between[b] = a >= 0 && c >= 0 && !within ? laplacian.entryOf(a, c) : -1;
+            betweenTransposed[b] = a >= 0 && c >= 0 && !within ? laplacian.entryOf(c, a) : -1;}
+        this.potentials = new double[n];
+        this.outflow = new double[graph.vertexCount()];
+        this.flows = new double[m];
+    }
+
+    /**
+     * Changes the pressure of a source for the next solve, which starts from the flows of the last one
+     * @param source an edge that was a pressure source of the network when the solver was made
+     */
+    public void setPressure(T source, double pressure){
+        int s = forest.sourceIndex(edges.get(source));
+        if(s < 0) throw new RuntimeException("This edge is not a pressure source!");
+        forest.setPressure(s, pressure);
+    }
+
+    /**
+     * Iterates from the flows of the last solve until the residual is below the tolerance
+     * @return the iterations of this solve, its last residual and whether it is below the tolerance
+     */
+    public Convergence solve(){
+        double scale = 0;
+        for(int s = 0; s < forest.sourceCount(); s++) scale = Math.max(scale, Math.abs(forest.pressure(s)));
+        int iterations = 0;
+        double residual;
+        boolean linear = true;
+        do{
+            linearize();
+            this.started = true;
+            LinearSolver solver = assemble();
+            linear &= solver == null || solver.converged();
+            iterations++;
+            residual = update();
+            residual = scale == 0 ? 0 : residual / scale;
+        } while(residual > tolerance && iterations < maxIterations);
+        forest.treeFlows(outflow, flows);
+        this.convergence = new Convergence(iterations, residual, residual <= tolerance && linear);
+        return convergence;
+    }
+
+    // the conductance and the flow of every branch at the last flows
+    private void linearize(){
+        for(int b = 0; b < branch.length; b++){
+            NonlinearElement h = element[b];
+            if(h == null){
+                conductance[b] = 1 / resistance[b];
+                offsetFlow[b] = 0;}
+            else if(!started){
+                conductance[b] = 1 / (resistance[b] + h.pressureDrop(1));
+                offsetFlow[b] = 0;}
+            else{
+                double q = flow[b];
+                conductance[b] = 1 / Math.max(resistance[b] + h.derivative(q), floor[b]);
+                offsetFlow[b] = q - conductance[b] * (resistance[b] * q + h.pressureDrop(q));}}
+    }
+
+    // writes the conductances into the Laplacian and solves the potentials, returning the solver it used
+    private LinearSolver assemble(){
+        DoubleBuffer values = laplacian.values;
+        for(int p = 0; p < laplacian.nonZeros(); p++) values.put(p, 0);
+        Arrays.fill(potentials, 0);
+        for(int b = 0; b < branch.length; b++){
+            double g = conductance[b];
+            add(values, atFrom[b], g);
+            add(values, atTo[b], g);
+            add(values, between[b], -g);
+            add(values, betweenTransposed[b], -g);
+            // the flow through the branch that is already known from the offsets of its ends
+            double known = g * (forest.offset[from[b]] - forest.offset[to[b]]) + offsetFlow[b];
+            int a = forest.node[from[b]], c = forest.node[to[b]];
+            if(a == c) continue;
+            if(a >= 0) potentials[a] -= known;
+            if(c >= 0) potentials[c] += known;}
+        if(potentials.length == 0) return null;
+        LinearSolver solver = factorization;
+        if(solver == null) solver = options.solverFor(laplacian);
+        else factorization.factorize(laplacian);
+        factorizations++;
+        solver.solve(potentials);
+        return solver;
+    }
+
+    private static void add(DoubleBuffer values, int entry, double value){
+        if(entry >= 0) values.put(entry, values.get(entry) + value);
+    }
+
+    // the next flows from the potentials, returning the largest difference of a pressure and the drop of its flow
+    private double update(){
+        double residual = 0;
+        Arrays.fill(outflow, 0);
+        Arrays.fill(flows, 0);
+        for(int b = 0; b < branch.length; b++){
+            double v = potential(from[b]) - potential(to[b]);
+            double q = conductance[b] * v + offsetFlow[b];
+            if(element[b] != null) residual = Math.max(residual, Math.abs(resistance[b] * q + element[b].pressureDrop(q) - v));
+            flow[b] = q;
+            flows[branch[b]] = q;
+            outflow[from[b]] += q;
+            outflow[to[b]] -= q;}
+        return residual;
+    }
+
+    private double potential(int v){
+        int n = forest.node[v];
+        return (n >= 0 ? potentials[n] : 0) + forest.offset[v];
+    }
+
+    /**
+     * @return the convergence of the last solve, or null before the first
+     */
+    public Convergence convergence(){
+        return convergence;
+    }
+
+    /**
+     * @return the amount of numeric factorizations, or of iterative solvers, that all solves so far have used, one per
+     *         iteration
+     */
+    public int factorizations(){
+        return factorizations;
+    }
+
+    /**
+     * @return the flow through every edge by its ordinal after the last solve, positive in the direction that startOf of
+     *         the network gives. The array is reused by the next solve
+     */
+    public double[] flows(){
+        return flows;
+    }
+
+    /**
+     * @return the flow through the edge after the last solve, positive in the direction that startOf of the network gives
+     */
+    public double flowThrough(T edge){
+        int e = edges.get(edge);
+        if(e < 0 || e >= flows.length) throw new RuntimeException("This edge does not exist in network!");
+        return flows[e];
+    }
+
+}
@@ -0,0 +1,116 @@
+package FlowNetwork;
+
+import java.util.HashMap;
+import java.util.List;
+
+    /*
+    Represents the same discrete flow as Flow, but solved by nodal analysis instead of by enumerating paths. The cost
+    of the solve therefore grows with the amount of vertices and edges in the network and not with the amount of paths.
+
+    A NodalFlow is created by the NodalSystem of its network, which is shared by all sources. A source with a weight only
+    keeps the flow of its ideal source, which is all that is needed to superpose it with the other sources, and a source
+    of weight 0 needs nothing but its pressure. The flow through every edge for this source alone is solved the first
+    time it is asked for, unless solving the source already gave it.
+    The flow is confined to the connected part of the graph that contains the source.
+
+    As in Flow the general flows are calculated for the pressure 1 and scaled by the pressure set afterwards.
+     */
+public class NodalFlow extends SourceFlow {
+
+    private final NodalSystem system;
+    private final int source;
+    private final int island;
+    private final double direction;
+    private double idealFlow;
+    private double equivalentResistance;
+    private int iterations;
+    private double pressure;
+    private double[] flowThroughEdge;
+
+    protected NodalFlow(NodalSystem system, int source, int island, double direction){
+        this.system = system;
+        this.source = source;
+        this.island = island;
+        this.direction = direction;
+        this.pressure = 1;
+    }
+
+    // sets the solution of the source, which is solved again by the system when a weight changes
+    protected void update(double idealFlow, double sourceFlow, double[] flows, int iterations){
+        this.idealFlow = idealFlow;
+        this.equivalentResistance = 1 / Math.abs(sourceFlow);
+        this.iterations = iterations;
+        this.flowThroughEdge = flows;
+    }
+
+    // the flow through the ideal source added in parallel to a source with a positive weight
+    protected double getIdealFlow(){
+        return idealFlow;
+    }
+
+    protected int getSource(){
+        return source;
+    }
+
+    // 1 if the pressure is positive at the start of the source edge, otherwise -1
+    protected double getDirection(){
+        return direction;
+    }
+
+    protected double getPressure(){
+        return pressure;
+    }
+
+    @Override
+    protected void setPressure(double pressure){
+        this.pressure = pressure;
+    }
+
+    @Override
+    protected double getEquivalentResistance(){
+        return equivalentResistance;
+    }
+
+    // the flows through every edge of the system for the pressure 1
+    protected double[] generalFlows(){
+        if(flowThroughEdge != null) return flowThroughEdge;
+        double pressure = this.pressure;
+        this.pressure = 1;
+        this.flowThroughEdge = system.flows(List.of(this));
+        this.pressure = pressure;
+        return flowThroughEdge;
+    }
+
+    // d R_eq / d R_i = (I_i / I_s)^2 by Tellegen's theorem, with the source flow I_s of the pressure 1
+    @Override
+    protected HashMap<Integer, Double> getEquivalentResistanceGradient(){
+        double[] flows = generalFlows();
+        double sourceFlow = flows[source];
+        boolean[] shorted = system.constraintLoops();
+        HashMap<Integer, Double> gradient = new HashMap<>();
+        for(int e = 0; e < flows.length; e++){
+            int edge = system.edgeAt(e);
+            if(e == source || system.indexOf(edge) != e) continue;
+            gradient.put(edge, shorted[e] ? 0 : flows[e] * flows[e] / (sourceFlow * sourceFlow));}
+        return gradient;
+    }
+
+    protected Convergence getConvergence(){
+        int before = system.getSolver().iterations();
+        generalFlows();
+        int used = iterations + system.getSolver().iterations() - before;
+        return new Convergence(used, system.lastResidual(), system.getSolver().converged());
+    }
+
+    @Override
+    public boolean contains(int e){
+        int index = system.indexOf(e);
+        return index >= 0 && system.islandOf(index) == island;
+    }
+
+    @Override
+    public double flowThrough(int e){
+        return generalFlows()[system.indexOf(e)] * pressure;
+    }
+
+}
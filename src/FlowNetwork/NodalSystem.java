@@ -0,0 +1,663 @@
+package FlowNetwork;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+    /*
+    The linear system of nodal analysis for a whole network, shared by all of its pressure sources.
+
+    Every edge with a positive weight is a resistor and is written into the conductance matrix (the weighted Laplacian)
+    of the network. An edge of weight 0 cannot be described by a conductance, so it is a wire: the pressure over it is 0.
+    The wires are contracted as in a ConstraintForest. A spanning forest of the wires is searched depth first, and all
+    vertices of a tree share one row of the Laplacian, so the system has no constraints at all. A wire that closes a loop
+    of wires is left out, since the flow around such a loop is undetermined. Its pressure is 0 through the rest of the
+    loop anyway. The tree of the first vertex of every connected part is grounded, which makes the Laplacian invertible.
+    The Laplacian is assembled as a SparseMatrix and factorized once by the LinearSolver chosen by the SolverOptions.
+
+    Every vertex has the potential of its tree plus an offset, which only a source of weight 0 gives it. The flows through
+    the resistors follow from the potentials, and the flows through the wires from the junction rule, summed from the
+    leaves of every tree to its root. Every source shares L:
+        - A source of weight 0 is a wire of the forest. Its pressure is an offset of the vertices below it in its tree,
+          which pushes a known flow through every resistor that leaves that subtree, and one solve with L gives the rest.
+        - A source with a positive weight stays a resistor in L, and an ideal source is added in parallel to it. A
+          resistor in parallel with an ideal source does not change the potentials of the rest of the network. The flow
+          of the ideal source is the pressure over the resistance b^T L^-1 b between the ends of the source, which costs
+          one solve with L.
+    Finding the flows of all sources then takes a single solve with L for the superposed offsets and ideal flows. The
+    depth first order keeps every subtree in one range of the order, so an offset only touches the vertices below it.
+
+    When the weight of a resistor changes, L changes by a rank one matrix. Instead of a new factorization the change is
+    corrected for by updateWeight. The resistance between the ends of every resistor source changes by a rank one
+    correction as well, which a single solve gives for all of them, so a change does not cost a solve for every source.
+    Adding or removing a resistor within a connected part is the same kind of change, as long as the forest of wires
+    stays the same.
+
+    The system numbers the vertices and edges of its block from 0, and keeps the ordinals of the CompactGraph they stand
+    for in sorted arrays, which are searched to go the other way. The weights are read from the graph, so the system only
+    holds a few ints for every vertex and edge besides the Laplacian itself.
+     */
+public class NodalSystem {
+
+    private static final int UNIT_BATCH = 16, MAX_CORRECTIONS = 64;
+
+    private final CompactGraph graph;
+    private final int[] vertices;
+    private final int[] island;
+    // the forest of wires, with every subtree in the range from its root to subtreeEnd of the depth first order
+    private final int[] order, position, subtreeEnd, parent, parentEdge, depth;
+    // the row of the tree of every vertex, and whether the row is grounded
+    private final int[] node;
+    private final boolean[] grounded;
+    private final ArrayList<NodalFlow> sources;
+    private final SolverOptions options;
+    private int[] edges;
+    private int[] in, out;
+    private int edgeCount;
+    private SparseMatrix matrix;
+    private SparseLDL factorization;
+    private LinearSolver solver;
+    private boolean patternChanged;
+    private double lastResidual;
+    private int corrections;
+
+    /**
+     * @param graph          the graph of the network
+     * @param blockEdges     the ordinals of the edges of the system in the graph
+     * @param factorizations saved factorizations by the fingerprint of their matrix, of which the one of this system is
+     *                       taken instead of factorizing again
+     */
+    protected NodalSystem(CompactGraph graph, int[] blockEdges, SolverOptions options, Map<Long, SparseLDL> factorizations){
+        this.options = options;
+        this.graph = graph;
+        int m = blockEdges.length;
+        this.edges = blockEdges.clone();
+        Arrays.sort(edges);
+        int[] ends = new int[2 * m];
+        for(int e = 0; e < m; e++){
+            ends[2 * e] = graph.from(edges[e]);
+            ends[2 * e + 1] = graph.to(edges[e]);}
+        this.vertices = Arrays.stream(ends).sorted().distinct().toArray();
+        int n = vertices.length;
+        this.in = new int[m];
+        this.out = new int[m];
+        for(int e = 0; e < m; e++){
+            in[e] = vertexIndex(graph.from(edges[e]));
+            out[e] = vertexIndex(graph.to(edges[e]));}
+        this.edgeCount = m;
+
+        int[] connected = identity(n);
+        for(int e = 0; e < m; e++) union(connected, in[e], out[e]);
+        this.island = new int[n];
+        for(int v = 0; v < n; v++) island[v] = root(connected, v);
+
+        // the wires of every vertex, next to each other
+        int[] wireStart = new int[n + 1];
+        for(int e = 0; e < m; e++)
+            if(isWire(e)){
+                wireStart[in[e] + 1]++;
+                wireStart[out[e] + 1]++;}
+        for(int v = 0; v < n; v++) wireStart[v + 1] += wireStart[v];
+        int[] wires = new int[wireStart[n]], cursor = Arrays.copyOf(wireStart, n);
+        for(int e = 0; e < m; e++)
+            if(isWire(e)){
+                wires[cursor[in[e]]++] = e;
+                wires[cursor[out[e]]++] = e;}
+
+        this.order = new int[n];
+        this.position = new int[n];
+        this.subtreeEnd = new int[n];
+        this.parent = new int[n];
+        this.parentEdge = new int[n];
+        this.depth = new int[n];
+        this.node = new int[n];
+        Arrays.fill(node, -1);
+        int[] rootOfRow = new int[n], stack = new int[n];
+        System.arraycopy(wireStart, 0, cursor, 0, n);
+        int trees = 0, k = 0;
+        // the first vertex of a part is its smallest, so its tree is started first and has it as root
+        for(int start = 0; start < n; start++){
+            if(node[start] >= 0) continue;
+            rootOfRow[trees] = start;
+            node[start] = trees++;
+            parent[start] = -1;
+            parentEdge[start] = -1;
+            position[start] = k;
+            order[k++] = start;
+            int top = 0;
+            stack[top++] = start;
+            while(top > 0){
+                int v = stack[top - 1];
+                if(cursor[v] == wireStart[v + 1]){
+                    subtreeEnd[v] = k;
+                    top--;
+                    continue;}
+                int e = wires[cursor[v]++];
+                int w = in[e] == v ? out[e] : in[e];
+                // the edge to the parent, or a wire that closes a loop
+                if(node[w] >= 0) continue;
+                node[w] = node[v];
+                parent[w] = v;
+                parentEdge[w] = e;
+                depth[w] = depth[v] + 1;
+                position[w] = k;
+                order[k++] = w;
+                stack[top++] = w;}
+        }
+        this.grounded = new boolean[trees];
+        for(int r = 0; r < trees; r++) grounded[r] = island[rootOfRow[r]] == rootOfRow[r];
+
+        this.matrix = assemble();
+        SparseLDL saved = factorizations.isEmpty() || options.method != SolverOptions.Method.DIRECT ?
+                null : factorizations.remove(matrix.fingerprint());
+        this.solver = saved != null && saved.size() == matrix.size() ? saved : options.solverFor(matrix);
+        this.sources = new ArrayList<>();
+    }
+
+    private SparseMatrix assemble(){
+        int n = grounded.length;
+        SparseMatrix.Assembly laplacian = new SparseMatrix.Assembly(n, options.storage);
+        for(int r = 0; r < n; r++) if(grounded[r]) laplacian.add(r, r, 1);
+        for(int e = 0; e < edgeCount; e++){
+            if(in[e] == out[e] || weight(e) == 0 || node[in[e]] == node[out[e]]) continue;
+            int a = free(in[e]), b = free(out[e]);
+            double g = 1 / weight(e);
+            if(a >= 0) laplacian.add(a, a, g);
+            if(b >= 0) laplacian.add(b, b, g);
+            if(a >= 0 && b >= 0) laplacian.addSymmetric(a, b, -g);
+        }
+        return laplacian.toMatrix();
+    }
+
+    /**
+     * @return the factorization of the Laplacian if it is up to date without corrections, otherwise null
+     */
+    protected SparseLDL factorization(){
+        return solver instanceof SparseLDL ldl ? ldl : null;
+    }
+
+    protected long fingerprint(){
+        return matrix.fingerprint();
+    }
+
+    private double weight(int edge){
+        return graph.weight(edges[edge]);
+    }
+
+    private boolean isWire(int edge){
+        return in[edge] != out[edge] && weight(edge) == 0;
+    }
+
+    // true for a wire of the forest, which every wire is that does not close a loop of wires
+    private boolean inForest(int edge){
+        return isWire(edge) && (parentEdge[in[edge]] == edge || parentEdge[out[edge]] == edge);
+    }
+
+    // the row of a vertex of the graph in the Laplacian, or -1 if it is not in the system
+    private int vertexIndex(int vertex){
+        int index = Arrays.binarySearch(vertices, vertex);
+        return index < 0 ? -1 : index;
+    }
+
+    private static int[] identity(int n){
+        int[] parent = new int[n];
+        for(int v = 0; v < n; v++) parent[v] = v;
+        return parent;
+    }
+
+    private static int root(int[] parent, int v){
+        while(parent[v] != v) v = parent[v] = parent[parent[v]];
+        return v;
+    }
+
+    private static void union(int[] parent, int a, int b){
+        a = root(parent, a);
+        b = root(parent, b);
+        if(a != b) parent[Math.max(a, b)] = Math.min(a, b);
+    }
+
+    // the row of the tree of a vertex in the Laplacian, or -1 if the tree is grounded
+    private int free(int v){
+        return grounded[node[v]] ? -1 : node[v];
+    }
+
+    // Adds the column of B for an edge times its flow. Grounded trees have a fixed potential and no equation
+    private void addIncidence(double[] vector, int edge, double flow){
+        int a = free(in[edge]), b = free(out[edge]);
+        if(a >= 0) vector[a] += flow;
+        if(b >= 0) vector[b] -= flow;
+    }
+
+    private double potentialOf(double[] potentials, double[] offsets, int v){
+        int r = free(v);
+        return (r < 0 ? 0 : potentials[r]) + offsets[v];
+    }
+
+    // Adds the pressure over a wire of the forest to the offsets of the vertices below it, so that in - out is the pressure
+    private void addOffset(double[] offsets, int wire, double pressure){
+        int child = parentEdge[out[wire]] == wire ? out[wire] : in[wire];
+        double offset = child == out[wire] ? -pressure : pressure;
+        for(int k = position[child]; k < subtreeEnd[child]; k++) offsets[order[k]] += offset;
+    }
+
+    // Moves the flows that the offsets push through the resistors to the right hand side
+    private void addOffsetFlows(double[] offsets, double[] rightHandSide){
+        for(int e = 0; e < edgeCount; e++){
+            if(in[e] == out[e] || weight(e) == 0) continue;
+            double over = offsets[in[e]] - offsets[out[e]];
+            if(over != 0) addIncidence(rightHandSide, e, -over / weight(e));}
+    }
+
+    /**
+     * Solves the flows of a new pressure source of pressure 1
+     */
+    protected NodalFlow addSource(int sourceEdge, int direction){
+        int source = indexOf(sourceEdge);
+        if(source < 0) throw new RuntimeException("This edge does not exist in network!");
+        if(in[source] == out[source]) throw new RuntimeException("The source edge must connect two different vertices!");
+        NodalFlow flow = new NodalFlow(this, source, island[in[source]], graph.from(sourceEdge) == direction ? 1 : -1);
+        solve(flow);
+        sources.add(flow);
+        return flow;
+    }
+
+    private void solve(NodalFlow flow){
+        int source = flow.getSource();
+        double pressure = flow.getDirection();
+        int iterations = solver.iterations();
+        // a source joined to itself by wires or with a weight of 0 on a loop of wires has no pressure over it
+        if(node[in[source]] == node[out[source]] && !inForest(source))
+            throw new RuntimeException("The source is short circuited!");
+        if(weight(source) == 0){
+            double[] flows = unitFlows(List.of(flow))[0];
+            flow.update(0, flows[source], flows, solver.iterations() - iterations);
+            return;}
+        double[] column = new double[matrix.size()];
+        addIncidence(column, source, 1);
+        solver.solve(column);
+        setResistance(flow, across(column, in[source], out[source]), solver.iterations() - iterations);
+    }
+
+    // sets the flow of the ideal source of a resistor source from the resistance b^T L^-1 b between its ends
+    private void setResistance(NodalFlow flow, double resistance, int iterations){
+        double pressure = flow.getDirection(), weight = weight(flow.getSource());
+        double idealFlow = -pressure / resistance, sourceFlow = idealFlow + pressure / weight;
+        // a source on a bridge has its own resistor as the only way around it, which a corrected L only gives up to rounding
+        if(Math.abs(sourceFlow) < 1e-12 * Math.abs(pressure / weight)) sourceFlow = 0;
+        flow.update(idealFlow, sourceFlow, null, iterations);
+    }
+
+    // the difference of a solution with L between the vertices v and w
+    private double across(double[] x, int v, int w){
+        int a = free(v), b = free(w);
+        return (a < 0 ? 0 : x[a]) - (b < 0 ? 0 : x[b]);
+    }
+
+    /**
+     * The derivative of the superposed flow through an edge by the weight of every edge, indexed as edgeIndex.
+     *
+     * For the flows I of one source and the flows J of its adjoint, where the flow 1 / R_j is injected over the edge j
+     * while the source and every wire hold the pressure 0,
+     *     d I_j / d R_i = I_i * J_i - [i = j] * I_j / R_j
+     * For a wire j the injection becomes the pressure 1 over j, whose own flow in the adjoint takes the place of the last
+     * term. The adjoints of all sources differ only in the flow of the ideal source that holds a source with a weight at
+     * the pressure 0, so they share the solve of the injection with L and cost one more solve each for such a source.
+     * When j is the source itself the flow is 1 / R_eq of the pressure 1, and d I_j / d R_i = -sign(I_j) * I_i^2 follows
+     * without an adjoint.
+     */
+    protected double[] flowSensitivity(Collection<NodalFlow> sources, int edge){
+        int n = matrix.size();
+        double[] sensitivity = new double[edgeCount];
+        boolean resistor = in[edge] != out[edge] && weight(edge) != 0;
+        double g = resistor ? 1 / weight(edge) : 0;
+        double[] injected = new double[n];
+        double[] offsets = new double[vertices.length];
+        if(resistor) addIncidence(injected, edge, g);
+        // as the weight goes to 0 the injection over a resistor becomes the pressure 1 over a wire
+        else if(inForest(edge)) addOffset(offsets, edge, 1);
+        addOffsetFlows(offsets, injected);
+        double[] adjoint = injected.clone();
+        solver.solve(adjoint);
+        boolean[] shorted = constraintLoops();
+        for(NodalFlow source : sources){
+            int s = source.getSource();
+            double p = source.getPressure();
+            double[] flows = source.generalFlows();
+            if(s == edge){
+                double sign = Math.signum(flows[s]);
+                for(int e = 0; e < edgeCount; e++) if(e != s && !shorted[e]) sensitivity[e] -= p * sign * flows[e] * flows[e];
+                continue;}
+            // a wire that closes a loop of wires carries no flow
+            if(!resistor && !inForest(edge)) continue;
+            double[] potentials = adjoint;
+            double[] adjointFlows = new double[edgeCount];
+            if(weight(s) != 0){
+                // the ideal source takes the flow that brings the pressure over it back to 0, over b^T L^-1 b of its ends
+                double over = potentialOf(adjoint, offsets, in[s]) - potentialOf(adjoint, offsets, out[s]);
+                double idealFlow = -over * source.getIdealFlow() * source.getDirection();
+                potentials = injected.clone();
+                addIncidence(potentials, s, -idealFlow);
+                solver.solve(potentials);
+                adjointFlows[s] += idealFlow;}
+            addResistorFlows(potentials, offsets, adjointFlows);
+            // the flow injected over a resistor enters the wires at its ends
+            double[] outflow = new double[vertices.length];
+            outflow[in[edge]] -= g;
+            outflow[out[edge]] += g;
+            addTreeFlows(adjointFlows, outflow);
+            // the weight of the source itself does not matter, since it is in parallel with the ideal source
+            for(int e = 0; e < edgeCount; e++){
+                if(e == s || in[e] == out[e] || shorted[e]) continue;
+                sensitivity[e] += p * flows[e] * adjointFlows[e];}
+            if(resistor) sensitivity[edge] -= p * flows[edge] * g;
+        }
+        return sensitivity;
+    }
+
+    // Marks the edges on loops of wires. Giving one of them a weight only moves its flow to the rest of the loop
+    protected boolean[] constraintLoops(){
+        boolean[] shorted = new boolean[edgeCount];
+        for(int e = 0; e < edgeCount; e++){
+            if(!isWire(e) || inForest(e)) continue;
+            shorted[e] = true;
+            // the path through the forest between the ends of the wire that closes the loop
+            int a = in[e], b = out[e];
+            while(a != b){
+                if(depth[a] < depth[b]){
+                    int swap = a;
+                    a = b;
+                    b = swap;}
+                shorted[parentEdge[a]] = true;
+                a = parent[a];}
+        }
+        return shorted;
+    }
+
+    /**
+     * Changes the weight of an edge and solves every source again, without factorizing the Laplacian from the start.
+     * The weight must stay positive, since an edge of weight 0 is a wire and changes the forest of the system.
+     */
+    protected void updateWeight(int edge, double weight){
+        double old = weight(edge);
+        if(old == 0 || weight <= 0) throw new RuntimeException("Only a positive weight can be changed to a positive weight!");
+        if(old == weight) return;
+        graph.setWeight(edges[edge], weight);
+        if(in[edge] == out[edge]) return;
+        changeAndSolveAgain(in[edge], out[edge], 1 / weight - 1 / old);
+    }
+
+    /**
+     * Reads the weights of all edges from the graph again and solves every source again, after many weights changed at
+     * once. No weight may have become 0 or stopped being 0, so the Laplacian keeps its pattern, and a direct solver only
+     * factorizes it numerically again with the ordering and the elimination tree it already has.
+     */
+    protected void reweigh(){
+        this.matrix = assemble();
+        if(options.method != SolverOptions.Method.DIRECT) this.solver = options.solverFor(matrix);
+        else{
+            SparseLDL ldl = solver instanceof SparseLDL direct ? direct : factorization;
+            if(patternChanged) ldl = new SparseLDL(matrix);
+            else ldl.factorize(matrix);
+            this.factorization = ldl;
+            this.solver = ldl;
+            this.patternChanged = false;}
+        solveAgain();
+    }
+
+    /**
+     * Adds an edge to the system without building it again. This is only possible for a resistor between two vertices
+     * that are already connected, since a wire changes the forest and an edge between two parts changes the grounding.
+     * The edge must be newer than every edge of the system, which keeps the ordinals sorted.
+     * @return false if the edge could not be added, in which case the system must be built again
+     */
+    protected boolean addEdge(int e){
+        int a = vertexIndex(graph.from(e)), b = vertexIndex(graph.to(e));
+        if(a < 0 || b < 0 || (edgeCount > 0 && e <= edges[edgeCount - 1])) return false;
+        double weight = graph.weight(e);
+        if(a != b && (weight == 0 || island[a] != island[b])) return false;
+        if(edgeCount == edges.length){
+            int capacity = Math.max(2 * edgeCount, 4);
+            this.edges = Arrays.copyOf(edges, capacity);
+            this.in = Arrays.copyOf(in, capacity);
+            this.out = Arrays.copyOf(out, capacity);}
+        int edge = edgeCount++;
+        edges[edge] = e;
+        in[edge] = a;
+        out[edge] = b;
+        if(a == b) return true;
+        changeAndSolveAgain(a, b, 1 / weight);
+        return true;
+    }
+
+    /**
+     * Removes an edge from the system without building it again, which is possible unless the edge is a wire of the
+     * forest or the only connection between two parts of its block. A source through the edge is removed too.
+     * @return false if the edge could not be removed, in which case the system must be built again
+     */
+    protected boolean removeEdge(int e){
+        int edge = indexOf(e);
+        if(edge < 0) throw new RuntimeException("This edge does not exist in network!");
+        boolean resistor = in[edge] != out[edge] && weight(edge) != 0;
+        if(inForest(edge) || (resistor && isBridge(edge))) return false;
+        sources.removeIf(flow -> flow.getSource() == edge);
+        int a = in[edge], b = out[edge];
+        // a removed edge is kept as a loop, which every part of the system already skips
+        out[edge] = a;
+        if(!resistor) return true;
+        changeAndSolveAgain(a, b, -1 / weight(edge));
+        return true;
+    }
+
+    // true if removing the edge disconnects its endpoints, found by a breadth first search
+    private boolean isBridge(int edge){
+        IntBuffer offset = graph.offsets(), incident = graph.incidents();
+        boolean[] reached = new boolean[vertices.length];
+        int[] queue = new int[vertices.length];
+        int head = 0, tail = 0;
+        queue[tail++] = in[edge];
+        reached[in[edge]] = true;
+        while(head < tail){
+            int v = queue[head++];
+            if(v == out[edge]) return false;
+            for(int i = offset.get(vertices[v]); i < offset.get(vertices[v] + 1); i++){
+                int index = indexOf(incident.get(i));
+                if(index < 0 || index == edge) continue;
+                int w = in[index] == v ? out[index] : in[index];
+                if(!reached[w]){
+                    reached[w] = true;
+                    queue[tail++] = w;}}
+        }
+        return true;
+    }
+
+    /*
+    Adds the conductance g between the vertices a and b to L. The matrix is updated in place when it already has an
+    entry between them, and assembled again otherwise. A direct solver is corrected through a LowRankUpdate until the
+    correction costs more than a new factorization. An iterative solver works on the matrix itself, so it keeps its
+    preconditioner, which stays a good approximation, until the matrix is assembled again. A resistor within a tree of
+    wires is not in L.
+     */
+    private void changeConductance(int v, int w, double g){
+        if(node[v] == node[w]) return;
+        int a = free(v), b = free(w);
+        if(a >= 0) matrix.addToEntry(a, a, g);
+        if(b >= 0) matrix.addToEntry(b, b, g);
+        boolean assembled = false;
+        if(a >= 0 && b >= 0){
+            if(matrix.addToEntry(a, b, -g)) matrix.addToEntry(b, a, -g);
+            else{
+                this.matrix = assemble();
+                assembled = true;}}
+        if(options.method != SolverOptions.Method.DIRECT){
+            if(assembled) this.solver = options.solverFor(matrix);
+            return;}
+        if(assembled) this.patternChanged = true;
+        if(solver instanceof SparseLDL ldl){
+            this.factorization = ldl;
+            this.solver = new LowRankUpdate(ldl);}
+        if(((LowRankUpdate) solver).update(a, b, g)) return;
+        // a new pattern needs a new symbolic factorization, otherwise only the numeric one is done again
+        if(patternChanged) this.factorization = new SparseLDL(matrix);
+        else factorization.factorize(matrix);
+        this.solver = factorization;
+        this.patternChanged = false;
+    }
+
+    private void solveAgain(){
+        this.corrections = 0;
+        for(NodalFlow flow : sources) solve(flow);
+    }
+
+    /*
+    Adds the conductance g between the vertices v and w and solves every source again. For the change g u u^T of L the
+    resistance of a resistor source follows from Sherman and Morrison, with x = L^-1 u solved before the change,
+        b^T L'^-1 b = b^T L^-1 b - g (b^T x)^2 / (1 + g u^T x)
+    where b^T x = u^T L^-1 b since L is symmetric. So one solve for x corrects all of them, where solving them again
+    would cost one solve for every source. A source of weight 0 is solved again as before. An iterative solver only
+    solves up to its tolerance, so with it, after a new factorization and after MAX_CORRECTIONS corrections every source
+    is solved again from L, which keeps the rounding of the corrections from adding up.
+     */
+    private void changeAndSolveAgain(int v, int w, double g){
+        if(options.method != SolverOptions.Method.DIRECT || corrections == MAX_CORRECTIONS){
+            changeConductance(v, w, g);
+            solveAgain();
+            return;}
+        // a resistor within a tree of wires is not in L, so u is 0, but it still carries the offsets of wire sources
+        double[] x = new double[matrix.size()];
+        boolean inL = node[v] != node[w];
+        if(inL){
+            int a = free(v), b = free(w);
+            if(a >= 0) x[a] = 1;
+            if(b >= 0) x[b] = -1;
+            solver.solve(x);}
+        changeConductance(v, w, g);
+        double denominator = 1 + g * across(x, v, w);
+        if((inL && solver instanceof SparseLDL) || !(denominator > 0)){
+            solveAgain();
+            return;}
+        corrections++;
+        for(NodalFlow flow : sources){
+            int source = flow.getSource();
+            if(weight(source) == 0){
+                solve(flow);
+                continue;}
+            double over = across(x, in[source], out[source]);
+            // the ideal flow is -pressure / resistance
+            double resistance = -flow.getDirection() / flow.getIdealFlow();
+            setResistance(flow, resistance - g * over * over / denominator, 0);}
+    }
+
+    /**
+     * @return the superposed flow through every edge, indexed as edgeIndex, of the sources times their pressures
+     */
+    protected double[] flows(Collection<NodalFlow> sources){
+        double[] potentials = new double[matrix.size()];
+        double[] offsets = new double[vertices.length];
+        double[] flows = new double[edgeCount];
+        for(NodalFlow source : sources) inject(source, source.getPressure(), potentials, offsets, flows);
+        addOffsetFlows(offsets, potentials);
+        double[] injected = potentials.clone();
+        solver.solve(potentials);
+        this.lastResidual = residual(potentials, injected);
+        addResistorFlows(potentials, offsets, flows);
+        addTreeFlows(flows, new double[vertices.length]);
+        return flows;
+    }
+
+    /**
+     * The flows of every source alone for the pressure 1, as generalFlows of each of them would give. The potentials of
+     * up to UNIT_BATCH sources are solved together, which traverses the factorization once for all of them
+     * @return the flow through every edge, indexed as edgeIndex, for every source in the order of the list
+     */
+    protected double[][] unitFlows(List<NodalFlow> sources){
+        double[][] flows = new double[sources.size()][];
+        for(int first = 0; first < sources.size(); first += UNIT_BATCH){
+            int batch = Math.min(UNIT_BATCH, sources.size() - first);
+            double[][] potentials = new double[batch][matrix.size()], offsets = new double[batch][vertices.length];
+            for(int k = 0; k < batch; k++){
+                flows[first + k] = new double[edgeCount];
+                inject(sources.get(first + k), 1, potentials[k], offsets[k], flows[first + k]);
+                addOffsetFlows(offsets[k], potentials[k]);}
+            solver.solve(potentials);
+            for(int k = 0; k < batch; k++){
+                addResistorFlows(potentials[k], offsets[k], flows[first + k]);
+                addTreeFlows(flows[first + k], new double[vertices.length]);}
+        }
+        return flows;
+    }
+
+    // adds the offsets of a source of weight 0 with the pressure p, or what the ideal source of a resistor injects
+    private void inject(NodalFlow source, double p, double[] potentials, double[] offsets, double[] flows){
+        int s = source.getSource();
+        if(weight(s) == 0){
+            addOffset(offsets, s, p * source.getDirection());
+            return;}
+        addIncidence(potentials, s, -p * source.getIdealFlow());
+        flows[s] += p * source.getIdealFlow();
+    }
+
+    // adds the flow through every resistor from the solved potentials of the trees and the offsets of the vertices
+    private void addResistorFlows(double[] potentials, double[] offsets, double[] flows){
+        for(int e = 0; e < edgeCount; e++)
+            if(in[e] != out[e] && weight(e) != 0)
+                flows[e] += (potentialOf(potentials, offsets, in[e]) - potentialOf(potentials, offsets, out[e])) / weight(e);
+    }
+
+    /**
+     * Sets the flows through the wires of the forest by the junction rule, from the leaves of every tree to its root
+     * @param outflow what leaves every vertex besides its flows, which the flows through the other edges are added to
+     */
+    private void addTreeFlows(double[] flows, double[] outflow){
+        for(int e = 0; e < edgeCount; e++){
+            if(in[e] == out[e] || inForest(e)) continue;
+            outflow[in[e]] += flows[e];
+            outflow[out[e]] -= flows[e];}
+        for(int k = order.length - 1; k >= 0; k--){
+            int v = order[k], e = parentEdge[v];
+            if(e < 0) continue;
+            flows[e] = in[e] == parent[v] ? outflow[v] : -outflow[v];
+            outflow[parent[v]] += outflow[v];}
+    }
+
+    // ||b - A x|| / ||b|| of the last potentials solved by flows
+    protected double lastResidual(){
+        return lastResidual;
+    }
+
+    private double residual(double[] x, double[] b){
+        double[] ax = new double[x.length];
+        matrix.multiply(x, ax);
+        double difference = 0, norm = 0;
+        for(int i = 0; i < x.length; i++){
+            difference += (b[i] - ax[i]) * (b[i] - ax[i]);
+            norm += b[i] * b[i];}
+        return norm == 0 ? 0 : Math.sqrt(difference / norm);
+    }
+
+    protected LinearSolver getSolver(){
+        return solver;
+    }
+
+    // the index of an edge of the graph in the system, or -1 if it is not in the system or has been removed from it
+    protected int indexOf(int e){
+        int index = Arrays.binarySearch(edges, 0, edgeCount, e);
+        return index < 0 || !graph.exists(e) ? -1 : index;
+    }
+
+    // the ordinal in the graph of an edge of the system
+    protected int edgeAt(int index){
+        return edges[index];
+    }
+
+    protected int edgeCount(){
+        return edgeCount;
+    }
+
+    protected int islandOf(int edge){
+        return island[in[edge]];
+    }
+
+}
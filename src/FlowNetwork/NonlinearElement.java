@@ -0,0 +1,53 @@
+package FlowNetwork;
+
+/*
+    The pressure drop over an edge that does not follow Ohm's law, as a function of the flow through it, like a pipe with
+    turbulent flow or a diode. The drop is in the direction of the flow, so a negative flow has a drop against the
+    direction of the edge, and it may not fall when the flow grows: the derivative must not be negative. The weight of
+    the edge stays a resistance in series with the element.
+ */
+public interface NonlinearElement {
+
+    /**
+     * @param flow the flow through the edge, positive in the direction that startOf of the network gives
+     */
+    double pressureDrop(double flow);
+
+    /**
+     * @return the derivative of the pressure drop by the flow
+     */
+    double derivative(double flow);
+
+    /**
+     * @param coefficient k, which must not be negative
+     * @param exponent    n, which is 2 for a fully turbulent pipe and 1 for a resistor of resistance k
+     * @return the element with the drop k |q|^(n - 1) q
+     */
+    static NonlinearElement powerLaw(double coefficient, double exponent){
+        if(coefficient < 0 || exponent < 1) throw new IllegalArgumentException("A power law needs a coefficient of at least 0 and an exponent of at least 1");
+        return new NonlinearElement(){
+            @Override
+            public double pressureDrop(double flow){
+                return coefficient * Math.pow(Math.abs(flow), exponent - 1) * flow;
+            }
+
+            @Override
+            public double derivative(double flow){
+                return exponent * coefficient * Math.pow(Math.abs(flow), exponent - 1);
+            }
+        };
+    }
+
+    /**
+     * The head loss of a water pipe by the formula of Hazen and Williams, h = 10.67 L q^1.852 / (C^1.852 d^4.8704)
+     * @param length    L in meters
+     * @param diameter  d in meters
+     * @param roughness the coefficient C, around 100 for old cast iron and 150 for plastic
+     * @return the element with the head loss in meters for the flow q in cubic meters per second
+     */
+    static NonlinearElement hazenWilliams(double length, double diameter, double roughness){
+        if(length < 0 || diameter <= 0 || roughness <= 0) throw new IllegalArgumentException("A pipe needs a length of at least 0 and a positive diameter and roughness");
+        return powerLaw(10.67 * length / (Math.pow(roughness, 1.852) * Math.pow(diameter, 4.8704)), 1.852);
+    }
+
+}
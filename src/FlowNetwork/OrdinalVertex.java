@@ -0,0 +1,60 @@
+package FlowNetwork;
+
+import java.nio.IntBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+    /*
+    A vertex of a network that is only given by ordinals, as one read by NetworkFile. Its edges are the ordinals of the
+    edges at it, read from the CompactGraph of the network when they are asked for, so a vertex costs nothing until it
+    is used and two vertices are equal when they have the same ordinal in the same graph.
+     */
+public class OrdinalVertex implements Vertex<Integer> {
+
+    private final CompactGraph graph;
+    private final int ordinal;
+
+    protected OrdinalVertex(CompactGraph graph, int ordinal){
+        this.graph = graph;
+        this.ordinal = ordinal;
+    }
+
+    public int ordinal(){
+        return ordinal;
+    }
+
+    protected boolean belongsTo(CompactGraph graph){
+        return this.graph == graph;
+    }
+
+    @Override
+    public Set<Integer> getEdges(){
+        HashSet<Integer> edges = new HashSet<>();
+        if(ordinal >= graph.vertexCount()) return edges;
+        IntBuffer offset = graph.offsets(), incident = graph.incidents();
+        for(int i = offset.get(ordinal); i < offset.get(ordinal + 1); i++) edges.add(incident.get(i));
+        return edges;
+    }
+
+    @Override
+    public Vertex<Integer> vertexThrough(Integer edge){
+        if(!graph.exists(edge) || (graph.from(edge) != ordinal && graph.to(edge) != ordinal)) return null;
+        return new OrdinalVertex(graph, graph.other(edge, ordinal));
+    }
+
+    @Override
+    public boolean equals(Object o){
+        return o instanceof OrdinalVertex vertex && vertex.graph == graph && vertex.ordinal == ordinal;
+    }
+
+    @Override
+    public int hashCode(){
+        return ordinal;
+    }
+
+    @Override
+    public String toString(){
+        return "v" + ordinal;
+    }
+
+}
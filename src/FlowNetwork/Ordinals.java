@@ -0,0 +1,108 @@
+package FlowNetwork;
+
+import java.util.Arrays;
+
+    /*
+    Gives every object a dense int ordinal, in the order the objects are added, and finds the ordinal of an object again.
+
+    The objects are kept in an array indexed by their ordinal. Finding an ordinal is an open addressing hash table of
+    ints with linear probing, which holds ordinal + 1 in the slot of the hash of the object, 0 in an empty slot and -1 in
+    the slot of a removed object. At most half of the slots are used, so an object costs one reference and two to four
+    ints, and nothing is boxed. Ordinals are never reused, which keeps them aligned with the ordinals of a CompactGraph.
+     */
+public class Ordinals<T> {
+
+    private static final int EMPTY = 0, REMOVED = -1;
+
+    private Object[] objects;
+    private int[] table;
+    private int size, used, removed;
+
+    protected Ordinals(int capacity){
+        this.objects = new Object[Math.max(capacity, 4)];
+        this.table = new int[tableSizeFor(objects.length)];
+    }
+
+    // a power of two with at most half of the slots used
+    private static int tableSizeFor(int capacity){
+        return Integer.highestOneBit(Math.max(2 * capacity - 1, 4)) << 1;
+    }
+
+    private static int hash(Object o){
+        int h = o.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the ordinal of the object, or -1 if it has none
+     */
+    protected int get(T object){
+        int mask = table.length - 1;
+        for(int slot = hash(object) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask){
+            int ordinal = table[slot] - 1;
+            if(table[slot] != REMOVED && objects[ordinal].equals(object)) return ordinal;}
+        return -1;
+    }
+
+    protected boolean contains(T object){
+        return get(object) >= 0;
+    }
+
+    /**
+     * Gives the object the next ordinal. The object must not have an ordinal yet
+     * @return the ordinal of the object
+     */
+    protected int add(T object){
+        if(size == objects.length) this.objects = Arrays.copyOf(objects, 2 * size);
+        // the table doubles, unless half of its used slots are removed objects
+        if(2 * (used + 1) > table.length) rehash(2 * removed > used ? table.length : 2 * table.length);
+        int ordinal = size++;
+        objects[ordinal] = object;
+        insert(ordinal);
+        return ordinal;
+    }
+
+    private void insert(int ordinal){
+        int mask = table.length - 1;
+        int slot = hash(objects[ordinal]) & mask;
+        while(table[slot] != EMPTY) slot = (slot + 1) & mask;
+        table[slot] = ordinal + 1;
+        used++;
+    }
+
+    // builds the table again without the removed slots
+    private void rehash(int tableSize){
+        this.table = new int[tableSize];
+        this.used = 0;
+        this.removed = 0;
+        for(int ordinal = 0; ordinal < size; ordinal++) if(objects[ordinal] != null) insert(ordinal);
+    }
+
+    /**
+     * Removes the object, whose ordinal is not given to any other object
+     */
+    protected void remove(T object){
+        int mask = table.length - 1;
+        for(int slot = hash(object) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask){
+            int ordinal = table[slot] - 1;
+            if(table[slot] == REMOVED || !objects[ordinal].equals(object)) continue;
+            table[slot] = REMOVED;
+            objects[ordinal] = null;
+            removed++;
+            return;}
+    }
+
+    /**
+     * @return the object of an ordinal, or null if it has been removed
+     */
+    @SuppressWarnings("unchecked") // only add puts objects into the array, and it takes a T
+    protected T objectAt(int ordinal){
+        return (T) objects[ordinal];
+    }
+
+    // the amount of ordinals given, including those of removed objects
+    protected int size(){
+        return size;
+    }
+
+}
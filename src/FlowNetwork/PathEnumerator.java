@@ -0,0 +1,126 @@
+package FlowNetwork;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+    /*
+    Enumerates the acyclic paths around a pressure source one at a time: every path from the direction vertex to the
+    other end of the source edge that does not pass the source edge itself or any vertex twice. These are the same paths
+    the GraphParser of Flow follows.
+
+    The search is a depth first search with an explicit stack, which holds the current path and, for every vertex on it,
+    the position in its row of the CompactGraph from which the edges have not been tried yet. Nothing else is kept, so the
+    memory grows with the amount of vertices and not with the amount of paths, and the search only runs as far as the
+    paths are asked for.
+
+    A plain depth first search can spend exponential time in a part of the graph from which the target can not be
+    reached anymore without crossing the current path. So a vertex is only entered if a breadth first search around the
+    path still reaches the target, which makes every branch of the search end in at least one path. Finding the next
+    path then costs at most one search of the graph for every edge of it. The network must not change while the paths
+    are enumerated.
+     */
+public class PathEnumerator implements Iterator<int[]> {
+
+    private final CompactGraph graph;
+    private final IntBuffer offset, incident;
+    private final int source;
+    private final int target;
+    private final int[] path;
+    private final int[] vertices;
+    private final int[] next;
+    private final boolean[] onPath;
+    private final int[] reached;
+    private final int[] queue;
+    private int depth;
+    private int search;
+    private int[] found;
+
+    /**
+     * @param graph     the graph of the network
+     * @param source    the ordinal of the source edge, which is left out of every path
+     * @param direction the ordinal of the vertex every path starts at
+     */
+    protected PathEnumerator(CompactGraph graph, int source, int direction){
+        this.graph = graph;
+        this.offset = graph.offsets();
+        this.incident = graph.incidents();
+        this.source = source;
+        this.target = graph.other(source, direction);
+        int n = graph.vertexCount();
+        this.path = new int[n];
+        this.vertices = new int[n];
+        this.next = new int[n];
+        this.onPath = new boolean[n];
+        this.reached = new int[n];
+        this.queue = new int[n];
+        vertices[0] = direction;
+        next[0] = offset.get(direction);
+        onPath[direction] = true;
+        advance();
+    }
+
+    // searches until the next path is found, or sets found to null when there are none left
+    private void advance(){
+        while(depth >= 0){
+            int v = vertices[depth];
+            if(next[depth] == offset.get(v + 1)){
+                onPath[v] = false;
+                depth--;
+                continue;}
+            int e = incident.get(next[depth]++);
+            if(e == source) continue;
+            int w = graph.other(e, v);
+            if(onPath[w]) continue;
+            if(w == target){
+                this.found = Arrays.copyOf(path, depth + 1);
+                found[depth] = e;
+                return;}
+            if(!reachesTarget(w)) continue;
+            path[depth++] = e;
+            vertices[depth] = w;
+            next[depth] = offset.get(w);
+            onPath[w] = true;
+        }
+        this.found = null;
+    }
+
+    // true if the target can be reached from a vertex without passing the current path, by a breadth first search.
+    // A vertex is reached in this search if reached holds the number of the search, so it is never cleared
+    private boolean reachesTarget(int start){
+        int mark = ++search;
+        int head = 0, tail = 0;
+        reached[start] = mark;
+        queue[tail++] = start;
+        while(head < tail){
+            int v = queue[head++];
+            for(int i = offset.get(v); i < offset.get(v + 1); i++){
+                int e = incident.get(i);
+                if(e == source) continue;
+                int w = graph.other(e, v);
+                if(w == target) return true;
+                if(!onPath[w] && reached[w] != mark){
+                    reached[w] = mark;
+                    queue[tail++] = w;}}
+        }
+        return false;
+    }
+
+    @Override
+    public boolean hasNext(){
+        return found != null;
+    }
+
+    /**
+     * @return the ordinals of the edges of the next path, in order from the direction vertex
+     */
+    @Override
+    public int[] next(){
+        if(found == null) throw new NoSuchElementException();
+        int[] current = found;
+        advance();
+        return current;
+    }
+
+}
@@ -0,0 +1,65 @@
+package FlowNetwork;
+
+    /*
+    The potential, or pressure, of every vertex of a network above a reference vertex, and the pressure drop over every
+    edge, as the superposed flows of its sources give them.
+
+    The network finds the potentials once above the first vertex of every connected part and keeps them until a source,
+    a weight or an edge changes. A reference only subtracts its own potential, so asking for the potentials above
+    another vertex shares the arrays and solves nothing. Like a FlowResult this does not change after it is made.
+     */
+public final class Potentials<T> {
+
+    private final Ordinals<Vertex<T>> vertices;
+    private final Ordinals<T> edges;
+    private final double[] potential, drop;
+    // the first vertex of the connected part of every vertex
+    private final int[] part;
+    private final int reference;
+
+    protected Potentials(Ordinals<Vertex<T>> vertices, Ordinals<T> edges, double[] potential, int[] part, double[] drop,
+                         int reference){
+        this.vertices = vertices;
+        this.edges = edges;
+        this.potential = potential;
+        this.part = part;
+        this.drop = drop;
+        this.reference = reference;
+    }
+
+    protected Potentials<T> relativeTo(int reference){
+        return new Potentials<>(vertices, edges, potential, part, drop, reference);
+    }
+
+    public Vertex<T> reference(){
+        return vertices.objectAt(reference);
+    }
+
+    /**
+     * @return the potential of the vertex above the reference, NaN if it is not connected to the reference
+     */
+    public double pressureAt(Vertex<T> vertex){
+        int v = vertices.get(vertex);
+        if(v < 0 || v >= potential.length) throw new RuntimeException("This vertex does not exist in network!");
+        return pressureAt(v);
+    }
+
+    /**
+     * @param ordinal the ordinal of a vertex, as vertexOrdinal of the network gives it
+     */
+    public double pressureAt(int ordinal){
+        if(part[ordinal] != part[reference]) return Double.NaN;
+        return potential[ordinal] - potential[reference];
+    }
+
+    /**
+     * @return the potential of the start of the edge minus the potential of its end, where startOf of the network
+     *         gives the start
+     */
+    public double pressureDrop(T edge){
+        int e = edges.get(edge);
+        if(e < 0 || e >= drop.length) throw new RuntimeException("This edge does not exist in network!");
+        return drop[e];
+    }
+
+}
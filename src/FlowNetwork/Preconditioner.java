@@ -0,0 +1,16 @@
+package FlowNetwork;
+
+import java.nio.DoubleBuffer;
+
+/*
+    An approximation M of a matrix A that is cheap to invert. ConjugateGradient converges in fewer iterations on
+    M^-1 A than on A, as long as M^-1 A is closer to the identity than A is.
+ */
+public interface Preconditioner {
+
+    /**
+     * Solves M z = r
+     */
+    void apply(DoubleBuffer r, DoubleBuffer z);
+
+}
@@ -0,0 +1,85 @@
+package FlowNetwork;
+
+    /*
+    Estimates the quantiles of a stream of values that are 0 or more, without keeping the values. This is the DDSketch of
+    Masson, Rim and Lee: a value x > 0 is counted in the bin ceil(log_gamma(x)) with gamma = (1 + a) / (1 - a), and every
+    value of a bin is within the relative accuracy a of the middle of the bin. So a quantile is estimated within a of the
+    value of the same rank, however the values are spread, and two sketches are merged by adding their bins.
+
+    The bins are a window of counts over consecutive indices. A flow that is constant up to rounding keeps only a few
+    bins, and a window that would grow beyond MAX_BINS collapses its lowest bins into one, which only loses accuracy
+    for values more than gamma^MAX_BINS below the largest one, about 10^17 for a = 1 %. Values below
+    Double.MIN_NORMAL count as 0.
+     */
+public class QuantileSketch {
+
+    private static final int MAX_BINS = 2048;
+
+    private final double gamma, logGamma;
+    private long[] bins;
+    private int offset;
+    private long zeros, count;
+
+    /**
+     * @param relativeAccuracy the largest relative error of a quantile, between 0 and 1
+     */
+    protected QuantileSketch(double relativeAccuracy){
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.bins = new long[0];
+    }
+
+    protected void add(double value){
+        count++;
+        if(value < Double.MIN_NORMAL) zeros++;
+        else addToBin((int) Math.ceil(Math.log(value) / logGamma), 1);
+    }
+
+    // the counts of another sketch of the same accuracy
+    protected void merge(QuantileSketch other){
+        this.count += other.count;
+        this.zeros += other.zeros;
+        for(int i = 0; i < other.bins.length; i++) if(other.bins[i] != 0) addToBin(other.offset + i, other.bins[i]);
+    }
+
+    private void addToBin(int index, long n){
+        if(bins.length == 0){
+            this.bins = new long[16];
+            this.offset = index - 8;}
+        else if(index < offset || index >= offset + bins.length) grow(index);
+        // an index below the window has been collapsed into its lowest bin
+        bins[Math.max(index, offset) - offset] += n;
+    }
+
+    // widens the window to the index with room for more, collapsing the lowest bins beyond MAX_BINS
+    private void grow(int index){
+        int low = Math.min(offset, index), high = Math.max(offset + bins.length - 1, index);
+        int length = Math.min(Math.max(high - low + 1, 2 * bins.length), MAX_BINS);
+        int newOffset = high - low + 1 > MAX_BINS || index < offset ? high - length + 1 : low;
+        long[] grown = new long[length];
+        for(int i = 0; i < bins.length; i++) grown[Math.max(offset + i, newOffset) - newOffset] += bins[i];
+        this.bins = grown;
+        this.offset = newOffset;
+    }
+
+    /**
+     * @param q the rank between 0 and 1, where 0.5 is the median
+     * @return the value of the rank, or NaN if nothing has been added
+     */
+    public double quantile(double q){
+        if(q < 0 || q > 1) throw new IllegalArgumentException("The rank must be between 0 and 1!");
+        if(count == 0) return Double.NaN;
+        long rank = (long) (q * (count - 1));
+        long seen = zeros;
+        if(rank < seen) return 0;
+        for(int i = 0; i < bins.length; i++){
+            seen += bins[i];
+            if(seen > rank) return 2 * Math.exp((offset + i) * logGamma) / (gamma + 1);}
+        return 2 * Math.exp((offset + bins.length - 1) * logGamma) / (gamma + 1);
+    }
+
+    public long count(){
+        return count;
+    }
+
+}
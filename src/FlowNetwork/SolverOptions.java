@@ -0,0 +1,85 @@
+package FlowNetwork;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * How the linear systems of nodal analysis are solved.
+ * A direct solve factorizes the system once and is exact up to rounding, but the factorization takes more memory than
+ * the network itself. The conjugate gradient method only keeps a few vectors besides the network and stops at a chosen
+ * accuracy, which trades accuracy for time on very large networks.
+ * The graph, the Laplacian and the vectors of the conjugate gradient method are kept on the heap, unless withStorage
+ * moves them outside it.
+ */
+public class SolverOptions {
+
+    public enum Method { DIRECT, CONJUGATE_GRADIENT }
+
+    public enum Preconditioning { JACOBI, INCOMPLETE_CHOLESKY }
+
+    public final Method method;
+    public final Preconditioning preconditioning;
+    public final double tolerance;
+    public final int maxIterations;
+    public final ForkJoinPool pool;
+    public final Storage storage;
+
+    private SolverOptions(Method method, Preconditioning preconditioning, double tolerance, int maxIterations,
+                          ForkJoinPool pool, Storage storage){
+        this.method = method;
+        this.preconditioning = preconditioning;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        this.pool = pool;
+        this.storage = storage;
+    }
+
+    /**
+     * Solves by a sparse LDL^T factorization
+     */
+    public static SolverOptions direct(){
+        return new SolverOptions(Method.DIRECT, null, 0, 0, ForkJoinPool.commonPool(), Storage.HEAP);
+    }
+
+    /**
+     * Solves by the preconditioned conjugate gradient method
+     * @param preconditioning the approximation of the system used to speed up convergence
+     * @param tolerance       the relative residual ||b - A x|| / ||b|| at which a solve stops
+     * @param maxIterations   the amount of iterations after which a solve stops even if it has not reached the tolerance
+     */
+    public static SolverOptions conjugateGradient(Preconditioning preconditioning, double tolerance, int maxIterations){
+        if(tolerance <= 0) throw new IllegalArgumentException("The tolerance must be positive!");
+        if(maxIterations <= 0) throw new IllegalArgumentException("The iteration budget must be positive!");
+        return new SolverOptions(Method.CONJUGATE_GRADIENT, preconditioning, tolerance, maxIterations,
+                ForkJoinPool.commonPool(), Storage.HEAP);
+    }
+
+    /**
+     * The parts of a network that are not connected to each other are solved in parallel, by default on the common pool
+     * @param pool the pool that solves the parts of a network
+     * @return the same options solved on the pool
+     */
+    public SolverOptions withPool(ForkJoinPool pool){
+        if(pool == null) throw new IllegalArgumentException("The pool can not be null!");
+        return new SolverOptions(method, preconditioning, tolerance, maxIterations, pool, storage);
+    }
+
+    /**
+     * Storage.OFF_HEAP keeps the graph, the Laplacian and the vectors of the conjugate gradient method in direct buffers.
+     * The factorization of a direct solve and the incomplete Cholesky preconditioner stay on the heap, so the storage
+     * outside the heap suits the conjugate gradient method with the Jacobi preconditioner best
+     * @param storage where the large arrays of the network are kept
+     * @return the same options with the storage
+     */
+    public SolverOptions withStorage(Storage storage){
+        if(storage == null) throw new IllegalArgumentException("The storage can not be null!");
+        return new SolverOptions(method, preconditioning, tolerance, maxIterations, pool, storage);
+    }
+
+    protected LinearSolver solverFor(SparseMatrix a){
+        if(method == Method.DIRECT) return new SparseLDL(a);
+        Preconditioner preconditioner = preconditioning == Preconditioning.INCOMPLETE_CHOLESKY ?
+                new IncompleteCholesky(a) : new JacobiPreconditioner(a, storage);
+        return new ConjugateGradient(a, preconditioner, tolerance, maxIterations, storage);
+    }
+
+}
@@ -0,0 +1,29 @@
+package FlowNetwork;
+
+import java.util.HashMap;
+
+/*
+    The flow generated by a single pressure source. FlowNetwork superposes one SourceFlow per source edge,
+    independent of whether the flow was solved by enumerating paths (Flow) or by nodal analysis (NodalFlow).
+ */
+public abstract class SourceFlow {
+
+    protected abstract void setPressure(double pressure);
+
+    protected abstract double getEquivalentResistance();
+
+    // the derivative of the equivalent resistance by the weight of every edge in the flow, by the ordinal of the edge
+    protected abstract HashMap<Integer, Double> getEquivalentResistanceGradient();
+
+    /**
+     * @param e the ordinal of an edge in the CompactGraph of the network
+     */
+    public abstract boolean contains(int e);
+
+    /**
+     * @param e the ordinal of an edge contained in the flow
+     * @return the flow through e, positive if it flows in the direction from -> to of the edge
+     */
+    public abstract double flowThrough(int e);
+
+}
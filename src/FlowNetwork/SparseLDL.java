@@ -0,0 +1,180 @@
+package FlowNetwork;
+
+    /*
+    Factorizes a symmetric sparse matrix A as P A P^T = L D L^T, where P is a fill reducing permutation from
+    NestedDissection, L is sparse and lower triangular with a unit diagonal, and D is diagonal.
+
+    The factorization happens in two steps. The symbolic step only looks at which entries of A are not 0. It builds the
+    elimination tree, where the parent of column k is the first row below the diagonal of column k of L, and counts the
+    entries of every column of L so that L can be allocated once. The numeric step then computes L row by row: the pattern
+    of row k of L is found by walking the elimination tree upwards from every entry of row k of A, and only those columns
+    are touched.
+
+    A pivot is only accepted if it keeps more than its last few digits of the diagonal entry of A it started from, since
+    otherwise it is the rounding error of a pivot of 0, and a singular matrix would be solved or not depending on rounding.
+
+    Since the symbolic step only depends on the pattern, a matrix with new values but the same pattern can be factorized
+    again by factorize without redoing the ordering.
+     */
+public class SparseLDL implements LinearSolver {
+
+    // the smallest pivot relative to the entry of A it was computed from
+    private static final double PIVOT_TOLERANCE = 1e-13;
+
+    final int n;
+    final int[] order;
+    private final int[] position;
+    final int[] parent;
+    final int[] columnStart;
+    final int[] rowIndex;
+    final double[] values;
+    final double[] diagonal;
+
+    protected SparseLDL(SparseMatrix a){
+        this.n = a.n;
+        this.order = NestedDissection.order(a);
+        this.position = new int[n];
+        for(int k = 0; k < n; k++) position[order[k]] = k;
+        this.parent = new int[n];
+        this.columnStart = new int[n + 1];
+        int[] flag = new int[n];
+        int[] count = new int[n];
+        for(int k = 0; k < n; k++){
+            parent[k] = -1;
+            flag[k] = k;
+            int column = order[k];
+            for(int p = a.columnStart.get(column); p < a.columnStart.get(column + 1); p++){
+                int i = position[a.rowIndex.get(p)];
+                if(i >= k) continue;
+                for(; flag[i] != k; i = parent[i]){
+                    if(parent[i] == -1) parent[i] = k;
+                    count[i]++;
+                    flag[i] = k;}}
+        }
+        for(int k = 0; k < n; k++) columnStart[k + 1] = columnStart[k] + count[k];
+        this.rowIndex = new int[columnStart[n]];
+        this.values = new double[columnStart[n]];
+        this.diagonal = new double[n];
+        factorize(a);
+    }
+
+    // a factorization that has been computed before, as read by NetworkFile
+    protected SparseLDL(int[] order, int[] parent, int[] columnStart, int[] rowIndex, double[] values, double[] diagonal){
+        this.n = order.length;
+        this.order = order;
+        this.position = new int[n];
+        for(int k = 0; k < n; k++) position[order[k]] = k;
+        this.parent = parent;
+        this.columnStart = columnStart;
+        this.rowIndex = rowIndex;
+        this.values = values;
+        this.diagonal = diagonal;
+    }
+
+    /**
+     * Computes the numeric factorization of a matrix with the same pattern as the one this was constructed with
+     */
+    protected final void factorize(SparseMatrix a){
+        if(a.n != n) throw new IllegalArgumentException("The matrix does not match the factorization");
+        double[] y = new double[n];
+        int[] pattern = new int[n];
+        int[] flag = new int[n];
+        int[] count = new int[n];
+        for(int k = 0; k < n; k++){
+            y[k] = 0;
+            int top = n;
+            flag[k] = k;
+            count[k] = 0;
+            int column = order[k];
+            for(int p = a.columnStart.get(column); p < a.columnStart.get(column + 1); p++){
+                int i = position[a.rowIndex.get(p)];
+                if(i > k) continue;
+                y[i] += a.values.get(p);
+                int length = 0;
+                for(; flag[i] != k; i = parent[i]){
+                    pattern[length++] = i;
+                    flag[i] = k;}
+                while(length > 0) pattern[--top] = pattern[--length];
+            }
+            double entry = y[k];
+            diagonal[k] = entry;
+            y[k] = 0;
+            for(; top < n; top++){
+                int i = pattern[top];
+                double yi = y[i];
+                y[i] = 0;
+                int end = columnStart[i] + count[i];
+                for(int p = columnStart[i]; p < end; p++) y[rowIndex[p]] -= values[p] * yi;
+                double lki = yi / diagonal[i];
+                diagonal[k] -= lki * yi;
+                if(end >= columnStart[i + 1]) throw new IllegalArgumentException("The matrix does not match the factorization");
+                rowIndex[end] = k;
+                values[end] = lki;
+                count[i]++;
+            }
+            // a pivot that cancelled down to the rounding of its entry says the matrix is singular, whatever its sign
+            if(Math.abs(diagonal[k]) <= PIVOT_TOLERANCE * Math.abs(entry))
+                throw new RuntimeException("Matrix is singular or too close to singular to be solved.");
+        }
+    }
+
+    /**
+     * Solves A x = b
+     * @param b the right hand side, which is overwritten by the solution x
+     */
+    @Override
+    public void solve(double[] b){
+        double[] x = new double[n];
+        for(int k = 0; k < n; k++) x[k] = b[order[k]];
+        for(int j = 0; j < n; j++){
+            double xj = x[j];
+            if(xj == 0) continue;
+            for(int p = columnStart[j]; p < columnStart[j + 1]; p++) x[rowIndex[p]] -= values[p] * xj;}
+        for(int j = 0; j < n; j++) x[j] /= diagonal[j];
+        for(int j = n - 1; j >= 0; j--){
+            double xj = x[j];
+            for(int p = columnStart[j]; p < columnStart[j + 1]; p++) xj -= values[p] * x[rowIndex[p]];
+            x[j] = xj;}
+        for(int k = 0; k < n; k++) b[order[k]] = x[k];
+    }
+
+    /**
+     * Solves A X = B with the columns of B interleaved, so that L is traversed once for all of them
+     * @param b the columns of B, which are overwritten by the columns of X
+     */
+    @Override
+    public void solve(double[][] b){
+        int r = b.length;
+        if(r == 1){
+            solve(b[0]);
+            return;}
+        double[] x = new double[n * r];
+        for(int k = 0; k < n; k++) for(int c = 0; c < r; c++) x[k * r + c] = b[c][order[k]];
+        for(int j = 0; j < n; j++){
+            int xj = j * r;
+            for(int p = columnStart[j]; p < columnStart[j + 1]; p++){
+                int xi = rowIndex[p] * r;
+                double lij = values[p];
+                for(int c = 0; c < r; c++) x[xi + c] -= lij * x[xj + c];}}
+        for(int j = 0; j < n; j++) for(int c = 0; c < r; c++) x[j * r + c] /= diagonal[j];
+        for(int j = n - 1; j >= 0; j--){
+            int xj = j * r;
+            for(int p = columnStart[j]; p < columnStart[j + 1]; p++){
+                int xi = rowIndex[p] * r;
+                double lij = values[p];
+                for(int c = 0; c < r; c++) x[xj + c] -= lij * x[xi + c];}}
+        for(int k = 0; k < n; k++) for(int c = 0; c < r; c++) b[c][order[k]] = x[k * r + c];
+    }
+
+    public int size(){
+        return n;
+    }
+
+    /**
+     * @return the amount of entries below the diagonal of L
+     */
+    public int nonZeros(){
+        return columnStart[n];
+    }
+
+}
@@ -0,0 +1,176 @@
+package FlowNetwork;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+    /*
+    A square matrix stored in compressed sparse columns. Column j holds the rows rowIndex[columnStart[j]] to
+    rowIndex[columnStart[j + 1] - 1] with the corresponding values. Only the entries that are not 0 are stored, so
+    the memory grows with the amount of entries rather than with the square of the size.
+
+    The equations of a flow only touch a few edges each, so the matrices are assembled from a list of (row, column, value)
+    entries by an Assembly. Entries added twice to the same position are summed.
+
+    The entries and the list they are assembled from are buffers of the Storage the Assembly is given, so the Laplacian
+    of a network with Storage.OFF_HEAP is kept outside the heap as well.
+     */
+public class SparseMatrix {
+
+    protected static class Assembly {
+        private final int n;
+        private final Storage storage;
+        private IntBuffer rows;
+        private IntBuffer columns;
+        private DoubleBuffer values;
+        private int size, capacity;
+
+        protected Assembly(int n, Storage storage){
+            this.n = n;
+            this.storage = storage;
+            this.capacity = 16;
+            this.rows = storage.ints(capacity);
+            this.columns = storage.ints(capacity);
+            this.values = storage.doubles(capacity);
+        }
+
+        protected Assembly(int n){
+            this(n, Storage.HEAP);
+        }
+
+        protected void add(int row, int column, double value){
+            if(row < 0 || row >= n || column < 0 || column >= n) throw new IndexOutOfBoundsException("(" + row + ", " + column + ")");
+            if(size == capacity){
+                this.capacity = 2 * size;
+                rows = storage.copyOf(rows, size, capacity);
+                columns = storage.copyOf(columns, size, capacity);
+                values = storage.copyOf(values, size, capacity);}
+            rows.put(size, row);
+            columns.put(size, column);
+            values.put(size++, value);
+        }
+
+        // adds the value to (i, j) and to (j, i)
+        protected void addSymmetric(int i, int j, double value){
+            add(i, j, value);
+            if(i != j) add(j, i, value);
+        }
+
+        protected SparseMatrix toMatrix(){
+            IntBuffer columnStart = storage.ints(n + 1);
+            for(int p = 0; p < size; p++) columnStart.put(columns.get(p) + 1, columnStart.get(columns.get(p) + 1) + 1);
+            for(int j = 0; j < n; j++) columnStart.put(j + 1, columnStart.get(j + 1) + columnStart.get(j));
+            int[] next = new int[n];
+            columnStart.get(0, next);
+            IntBuffer rowIndex = storage.ints(size);
+            DoubleBuffer entries = storage.doubles(size);
+            for(int p = 0; p < size; p++){
+                int q = next[columns.get(p)]++;
+                rowIndex.put(q, rows.get(p));
+                entries.put(q, values.get(p));}
+            // sums the duplicate entries of each column
+            int[] seenAt = new int[n];
+            Arrays.fill(seenAt, -1);
+            int nz = 0;
+            for(int j = 0; j < n; j++){
+                int start = nz;
+                for(int p = columnStart.get(j); p < columnStart.get(j + 1); p++){
+                    int i = rowIndex.get(p);
+                    if(seenAt[i] >= start) entries.put(seenAt[i], entries.get(seenAt[i]) + entries.get(p));
+                    else{
+                        seenAt[i] = nz;
+                        rowIndex.put(nz, i);
+                        entries.put(nz++, entries.get(p));}}
+                columnStart.put(j, start);}
+            columnStart.put(n, nz);
+            return new SparseMatrix(n, columnStart, storage.copyOf(rowIndex, nz, nz), storage.copyOf(entries, nz, nz));
+        }
+    }
+
+    final int n;
+    final IntBuffer columnStart;
+    final IntBuffer rowIndex;
+    final DoubleBuffer values;
+
+    private SparseMatrix(int n, IntBuffer columnStart, IntBuffer rowIndex, DoubleBuffer values){
+        this.n = n;
+        this.columnStart = columnStart;
+        this.rowIndex = rowIndex;
+        this.values = values;
+    }
+
+    public int size(){
+        return n;
+    }
+
+    public int nonZeros(){
+        return columnStart.get(n);
+    }
+
+    // y = A * x
+    protected void multiply(DoubleBuffer x, DoubleBuffer y){
+        // the heap is read through its arrays, which the JIT compiles to tighter loops than buffer accesses
+        if(values.hasArray() && x.hasArray() && y.hasArray()){
+            multiply(columnStart.array(), rowIndex.array(), values.array(), x.array(), y.array());
+            return;}
+        IntBuffer columnStart = this.columnStart, rowIndex = this.rowIndex;
+        DoubleBuffer values = this.values;
+        for(int i = 0; i < n; i++) y.put(i, 0);
+        int start = columnStart.get(0);
+        for(int j = 0; j < n; j++){
+            int end = columnStart.get(j + 1);
+            double xj = x.get(j);
+            if(xj != 0)
+                for(int p = start; p < end; p++){
+                    int i = rowIndex.get(p);
+                    y.put(i, y.get(i) + values.get(p) * xj);}
+            start = end;}
+    }
+
+    private void multiply(int[] columnStart, int[] rowIndex, double[] values, double[] x, double[] y){
+        Arrays.fill(y, 0, n, 0);
+        for(int j = 0; j < n; j++){
+            double xj = x[j];
+            if(xj == 0) continue;
+            for(int p = columnStart[j]; p < columnStart[j + 1]; p++)
+                y[rowIndex[p]] += values[p] * xj;}
+    }
+
+    protected void multiply(double[] x, double[] y){
+        multiply(DoubleBuffer.wrap(x), DoubleBuffer.wrap(y));
+    }
+
+    // adds the value to an entry that is already stored, so that the pattern stays the same. Returns false if it is not
+    protected boolean addToEntry(int row, int column, double value){
+        int p = entryOf(row, column);
+        if(p < 0) return false;
+        values.put(p, values.get(p) + value);
+        return true;
+    }
+
+    // the place of an entry among the stored values, or -1 if it is not stored
+    protected int entryOf(int row, int column){
+        for(int p = columnStart.get(column); p < columnStart.get(column + 1); p++)
+            if(rowIndex.get(p) == row) return p;
+        return -1;
+    }
+
+    // a hash of the pattern and the values, which tells a saved factorization of this matrix from one of another matrix
+    protected long fingerprint(){
+        long hash = n;
+        for(int j = 0; j <= n; j++) hash = (hash ^ columnStart.get(j)) * 0x9E3779B97F4A7C15L;
+        for(int p = 0; p < nonZeros(); p++){
+            hash = (hash ^ rowIndex.get(p)) * 0x9E3779B97F4A7C15L;
+            hash = (hash ^ Double.doubleToLongBits(values.get(p))) * 0x9E3779B97F4A7C15L;}
+        return hash ^ (hash >>> 32);
+    }
+
+    protected double[] diagonal(){
+        double[] diagonal = new double[n];
+        for(int j = 0; j < n; j++)
+            for(int p = columnStart.get(j); p < columnStart.get(j + 1); p++)
+                if(rowIndex.get(p) == j) diagonal[j] += values.get(p);
+        return diagonal;
+    }
+
+}
@@ -0,0 +1,56 @@
+package FlowNetwork;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Where the large arrays of a network are kept: the CompactGraph, the Laplacian of nodal analysis and the vectors the
+ * conjugate gradient method iterates on.
+ * On the heap every array is an ordinary Java array. Outside the heap it is a direct buffer, which the garbage collector
+ * only sees as one small object, so a network of tens of millions of edges adds a handful of objects to the heap however
+ * large it is. Direct buffers count against -XX:MaxDirectMemorySize, which must be raised for networks larger than the
+ * heap, and a single buffer holds at most 2^31 - 1 bytes.
+ */
+public enum Storage {
+    HEAP,
+    OFF_HEAP;
+
+    /**
+     * @return an IntBuffer of n zeros
+     */
+    protected IntBuffer ints(int n){
+        if(this == HEAP) return IntBuffer.wrap(new int[n]);
+        return direct(n, Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * @return a DoubleBuffer of n zeros
+     */
+    protected DoubleBuffer doubles(int n){
+        if(this == HEAP) return DoubleBuffer.wrap(new double[n]);
+        return direct(n, Double.BYTES).asDoubleBuffer();
+    }
+
+    private static ByteBuffer direct(int n, int bytes){
+        if((long) n * bytes > Integer.MAX_VALUE) throw new RuntimeException("The array is too large for a direct buffer!");
+        return ByteBuffer.allocateDirect(n * bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return a copy of the first length entries of a buffer, in a buffer of this storage with the given capacity
+     */
+    protected IntBuffer copyOf(IntBuffer buffer, int length, int capacity){
+        IntBuffer copy = ints(capacity);
+        copy.put(0, buffer, 0, length);
+        return copy;
+    }
+
+    protected DoubleBuffer copyOf(DoubleBuffer buffer, int length, int capacity){
+        DoubleBuffer copy = doubles(capacity);
+        copy.put(0, buffer, 0, length);
+        return copy;
+    }
+
+}
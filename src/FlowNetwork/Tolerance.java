@@ -0,0 +1,47 @@
+package FlowNetwork;
+
+import java.util.SplittableRandom;
+
+/**
+ * How the real weight of an edge is spread around its nominal weight, as the tolerance of a resistor or a pipe.
+ * A weight is never sampled below 0, and an edge of weight 0 stays 0, since it is a wire and not a resistor.
+ */
+public abstract class Tolerance {
+
+    /**
+     * @param percent the largest deviation from the nominal weight in percent, below 100
+     * @return a weight uniformly distributed between nominal * (1 - percent / 100) and nominal * (1 + percent / 100)
+     */
+    public static Tolerance uniform(double percent){
+        if(percent < 0 || percent >= 100) throw new IllegalArgumentException("The tolerance must be at least 0 and below 100 percent!");
+        double spread = percent / 100;
+        return new Tolerance(){
+            @Override
+            protected double sample(double nominal, SplittableRandom random){
+                return nominal * (1 + spread * (2 * random.nextDouble() - 1));
+            }
+        };
+    }
+
+    /**
+     * @param percent the deviation from the nominal weight in percent that three standard deviations reach, so that
+     *                99.7 % of the weights are within the tolerance
+     * @return a weight normally distributed around the nominal weight, drawn again whenever it would be 0 or less
+     */
+    public static Tolerance normal(double percent){
+        if(percent < 0) throw new IllegalArgumentException("The tolerance can not be negative!");
+        double deviation = percent / 300;
+        return new Tolerance(){
+            @Override
+            protected double sample(double nominal, SplittableRandom random){
+                double weight;
+                do weight = nominal * (1 + deviation * random.nextGaussian());
+                while(weight <= 0 && nominal > 0);
+                return weight;
+            }
+        };
+    }
+
+    protected abstract double sample(double nominal, SplittableRandom random);
+
+}
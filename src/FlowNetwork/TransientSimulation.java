@@ -0,0 +1,208 @@
+package FlowNetwork;
+
+import java.util.Arrays;
+
+    /*
+    Simulates a network through time with a fixed time step, where some edges are capacitors (accumulators) or inductors
+    (inertances) besides resistors, wires of weight 0 and the pressure sources of the network. The weight of a capacitor
+    or inductor is a resistance in series with it. Everything starts at rest, so the sources are switched on at time 0.
+
+    Every step replaces a capacitor or inductor by its companion model: a conductance G in parallel with a flow that
+    only depends on the state of the previous step, so that the flow through the edge is i = G v + h for the pressure v
+    over it. With the time step dt, backward Euler and the trapezoidal rule give
+        capacitor C:  G = 1 / (R + dt / C)        h = -G v_C                      v_C += dt / C * i
+                      G = 1 / (R + dt / 2C)       h = -G (v_C + dt / 2C * i)      v_C += dt / 2C * (i + i_old)
+        inductor L:   G = 1 / (R + L / dt)        h = G L / dt * i
+                      G = 1 / (R + 2L / dt)       h = G (v + (2L / dt - R) * i)
+    where v_C is the pressure over the capacitor itself and i and v are those of the previous step. Backward Euler damps
+    the fastest modes, the trapezoidal rule is second order and keeps the energy of an undamped oscillation. But the
+    trapezoidal rule carries a jump of the sources on as an error of first order that never dies out in an undamped
+    network, so the step after the sources are switched on or changed is taken as two backward Euler steps of half the
+    time step. Their companion conductances are the same as those of the trapezoidal rule, and so is the factorization.
+
+    The wires and sources are contracted by a ConstraintForest, so the conductances only connect its trees. This Laplacian
+    does not depend on the state, so it is factorized once when the simulation is made, and a step costs one solve with
+    it and a few passes over the edges.
+
+    All sources act at once, as ideal sources with their weight in parallel. So a network with one source, or with
+    sources of weight 0, settles to the flows of the FlowNetwork, where the capacitors carry nothing and the inductors
+    are their series resistance. The FlowNetwork superposes every source alone with the other sources as their weight,
+    which differs from this when several sources with a weight influence each other.
+     */
+public class TransientSimulation<T> {
+
+    public enum Integration { BACKWARD_EULER, TRAPEZOIDAL }
+
+    /**
+     * Receives the result of every step
+     */
+    public interface StepListener {
+        /**
+         * @param flows the flow through every edge by its ordinal, positive in the direction that startOf of the
+         *              network gives. The array is reused by the next step
+         */
+        void step(int step, double time, double[] flows);
+    }
+
+    private static final byte RESISTOR = 0, CAPACITOR = 1, INDUCTOR = 2;
+
+    private final Ordinals<T> edges;
+    private final double timeStep;
+    private final Integration integration;
+
+    // the edges with a conductance, which are resistors and the companion models of capacitors and inductors
+    private final int[] branch, from, to;
+    private final byte[] kind;
+    private final double[] conductance, reactance, resistance;
+    private final double[] current, voltage, history;
+
+    private final ConstraintForest forest;
+    private final LinearSolver solver;
+    private final double[] potentials, outflow, flows;
+    private int steps;
+    private boolean restart = true;
+
+    /**
+     * @param capacitance the capacitance of every edge by its ordinal, or 0 if it is no capacitor
+     * @param inductance  the inductance of every edge by its ordinal, or 0 if it is no inductor
+     * @param sources     the ordinals of the source edges, with the vertex of their positive pressure and their pressure
+     */
+    protected TransientSimulation(CompactGraph graph, Ordinals<T> edges, double[] capacitance, double[] inductance,
+                                  int[] sources, int[] directions, double[] pressures, double timeStep,
+                                  Integration integration, SolverOptions options){
+        if(timeStep <= 0) throw new RuntimeException("The time step must be positive!");
+        this.edges = edges;
+        this.timeStep = timeStep;
+        this.integration = integration;
+        int m = graph.edgeCount();
+        boolean[] isBranch = ConstraintForest.branches(graph, capacitance, inductance, sources);
+        int branches = 0;
+        for(int e = 0; e < m; e++) if(isBranch[e]) branches++;
+        this.branch = new int[branches];
+        this.from = new int[branches];
+        this.to = new int[branches];
+        this.kind = new byte[branches];
+        this.conductance = new double[branches];
+        this.reactance = new double[branches];
+        this.resistance = new double[branches];
+        this.current = new double[branches];
+        this.voltage = new double[branches];
+        this.history = new double[branches];
+        for(int e = 0, b = 0; e < m; e++){
+            if(!isBranch[e]) continue;
+            branch[b] = e;
+            from[b] = graph.from(e);
+            to[b] = graph.to(e);
+            resistance[b] = graph.weight(e);
+            kind[b] = capacitance[e] > 0 ? CAPACITOR : inductance[e] > 0 ? INDUCTOR : RESISTOR;
+            reactance[b] = kind[b] == CAPACITOR ? capacitance[e] : inductance[e];
+            conductance[b] = 1 / (resistance[b] + companionResistance(kind[b], reactance[b]));
+            b++;}
+
+        this.forest = new ConstraintForest(graph, isBranch, sources, directions, pressures);
+        int n = forest.unknowns();
+        int[] node = forest.node;
+        SparseMatrix.Assembly laplacian = new SparseMatrix.Assembly(n, options.storage);
+        for(int b = 0; b < branches; b++){
+            int a = node[from[b]], c = node[to[b]];
+            // a branch within a tree has the same potential at both ends
+            if(a == c) continue;
+            double g = conductance[b];
+            if(a >= 0) laplacian.add(a, a, g);
+            if(c >= 0) laplacian.add(c, c, g);
+            if(a >= 0 && c >= 0) laplacian.addSymmetric(a, c, -g);}
+        this.solver = n == 0 ? null : options.solverFor(laplacian.toMatrix());
+        this.potentials = new double[n];
+        this.outflow = new double[graph.vertexCount()];
+        this.flows = new double[m];
+    }
+
+    // the resistance of the conductance of the companion model, without the series resistance
+    private double companionResistance(byte kind, double reactance){
+        double halving = integration == Integration.TRAPEZOIDAL ? 2 : 1;
+        if(kind == CAPACITOR) return timeStep / (halving * reactance);
+        if(kind == INDUCTOR) return halving * reactance / timeStep;
+        return 0;
+    }
+
+    /**
+     * Changes the pressure of a source from the next step on, which keeps the factorization
+     * @param source an edge that was a pressure source of the network when the simulation was made
+     */
+    public void setPressure(T source, double pressure){
+        int s = forest.sourceIndex(edges.get(source));
+        if(s < 0) throw new RuntimeException("This edge is not a pressure source!");
+        forest.setPressure(s, pressure);
+        this.restart = true;
+    }
+
+    /**
+     * Simulates the next steps and hands every one of them to the listener
+     */
+    public void run(int steps, StepListener listener){
+        for(int k = 0; k < steps; k++){
+            step();
+            listener.step(this.steps, time(), flows);}
+    }
+
+    public double time(){
+        return steps * timeStep;
+    }
+
+    private void step(){
+        if(integration == Integration.TRAPEZOIDAL && restart){
+            solveStep(false);
+            solveStep(false);
+            this.restart = false;}
+        else solveStep(integration == Integration.TRAPEZOIDAL);
+        forest.treeFlows(outflow, flows);
+        steps++;
+    }
+
+    // one solve, by the trapezoidal rule or by backward Euler over the time step it shares the conductances with
+    private void solveStep(boolean trapezoidal){
+        double dt = integration == Integration.TRAPEZOIDAL && !trapezoidal ? timeStep / 2 : timeStep;
+        int branches = branch.length;
+        Arrays.fill(potentials, 0);
+        for(int b = 0; b < branches; b++){
+            history[b] = history(b, trapezoidal, dt);
+            // the flow through the branch that is already known from the offsets of its ends
+            double known = conductance[b] * (forest.offset[from[b]] - forest.offset[to[b]]) + history[b];
+            int a = forest.node[from[b]], c = forest.node[to[b]];
+            if(a >= 0) potentials[a] -= known;
+            if(c >= 0) potentials[c] += known;}
+        if(solver != null) solver.solve(potentials);
+        Arrays.fill(outflow, 0);
+        Arrays.fill(flows, 0);
+        for(int b = 0; b < branches; b++){
+            double v = potential(from[b]) - potential(to[b]);
+            double i = conductance[b] * v + history[b];
+            update(b, v, i, trapezoidal, dt);
+            flows[branch[b]] = i;
+            outflow[from[b]] += i;
+            outflow[to[b]] -= i;}
+    }
+
+    private double potential(int v){
+        int n = forest.node[v];
+        return (n >= 0 ? potentials[n] : 0) + forest.offset[v];
+    }
+
+    private double history(int b, boolean trapezoidal, double dt){
+        if(kind[b] == CAPACITOR)
+            return -conductance[b] * (voltage[b] + (trapezoidal ? dt / (2 * reactance[b]) * current[b] : 0));
+        if(kind[b] == INDUCTOR)
+            return trapezoidal ? conductance[b] * (voltage[b] + (2 * reactance[b] / dt - resistance[b]) * current[b])
+                    : conductance[b] * reactance[b] / dt * current[b];
+        return 0;
+    }
+
+    // the state of a capacitor is the pressure over the capacitor itself, of an inductor the pressure over the edge
+    private void update(int b, double v, double i, boolean trapezoidal, double dt){
+        if(kind[b] == CAPACITOR)
+            voltage[b] += trapezoidal ? dt / (2 * reactance[b]) * (i + current[b]) : dt / reactance[b] * i;
+        else voltage[b] = v;
+        current[b] = i;
+    }
+
+}
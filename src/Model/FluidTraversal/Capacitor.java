@@ -0,0 +1,20 @@
+package Model.FluidTraversal;
+
+// an accumulator, which stores flow and only carries it while its pressure changes
+public class Capacitor extends Component {
+
+    private double capacitance;
+
+    protected Capacitor(double capacitance){
+        super(0);
+        this.capacitance = capacitance;
+    }
+
+    public double getCapacitance(){
+        return capacitance;
+    }
+
+    protected void setCapacitance(double capacitance){
+        this.capacitance = capacitance;
+    }
+}
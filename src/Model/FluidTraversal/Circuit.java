@@ -1,17 +1,29 @@
 package Model.FluidTraversal;
 
+import FlowNetwork.NonlinearElement;
+import FlowNetwork.Tolerance;
+
+import java.util.HashMap;
 import java.util.HashSet;
 
 public class Circuit {
 
     private final HashSet<Resistor> resistors;
     private final HashSet<VoltageSource> voltageSources;
+    private final HashSet<Capacitor> capacitors;
+    private final HashSet<Inductor> inductors;
     private final HashSet<Junction> junctions;
+    private final HashMap<Component, Tolerance> tolerances;
+    private final HashMap<Component, NonlinearElement> characteristics;
 
     public Circuit(){
         resistors = new HashSet<>();
         voltageSources = new HashSet<>();
+        capacitors = new HashSet<>();
+        inductors = new HashSet<>();
         junctions = new HashSet<>();
+        tolerances = new HashMap<>();
+        characteristics = new HashMap<>();
     }
 
     public Resistor newResistor(){
@@ -26,6 +38,18 @@ public class Circuit {
         return newVoltageSource;
     }
 
+    public Capacitor newCapacitor(){
+        Capacitor newCapacitor = new Capacitor(5);
+        capacitors.add(newCapacitor);
+        return newCapacitor;
+    }
+
+    public Inductor newInductor(){
+        Inductor newInductor = new Inductor(5);
+        inductors.add(newInductor);
+        return newInductor;
+    }
+
     public Junction newJunction(){
         Junction newJunction = new Junction();
         junctions.add(newJunction);
@@ -41,7 +65,11 @@ public class Circuit {
 
     public void remove(Component component){
         if(component instanceof Resistor) this.resistors.remove((Resistor) component);
+        else if(component instanceof Capacitor) this.capacitors.remove((Capacitor) component);
+        else if(component instanceof Inductor) this.inductors.remove((Inductor) component);
         else voltageSources.remove((VoltageSource) component);
+        tolerances.remove(component);
+        characteristics.remove(component);
         for(Junction j : junctions){
             j.remove(component.getInput());
             j.remove(component.getOutput());}
@@ -66,6 +94,36 @@ public class Circuit {
         else throw new RuntimeException("Unknown voltage source");
     }
 
+    public void setCapacitance(Capacitor capacitor, double capacitance){
+        if(capacitors.contains(capacitor)) capacitor.setCapacitance(capacitance);
+        else throw new RuntimeException("Unknown capacitor");
+    }
+
+    public void setInductance(Inductor inductor, double inductance){
+        if(inductors.contains(inductor)) inductor.setInductance(inductance);
+        else throw new RuntimeException("Unknown inductor");
+    }
+
+    // how the resistance of a component is spread around its value, for FlowNetwork.monteCarlo
+    public void setTolerance(Component component, Tolerance tolerance){
+        if(resistors.contains(component) || voltageSources.contains(component) || capacitors.contains(component)
+                || inductors.contains(component)) tolerances.put(component, tolerance);
+        else throw new RuntimeException("Unknown component");
+    }
+
+    public void removeTolerance(Component component){
+        tolerances.remove(component);
+    }
+
+    // a pressure drop that depends on the flow, in series with the resistance of a resistor, for FlowNetwork.newtonSolver
+    public void setCharacteristic(Resistor resistor, NonlinearElement characteristic){
+        if(resistors.contains(resistor)) characteristics.put(resistor, characteristic);
+        else throw new RuntimeException("Unknown resistor");
+    }
+
+    public void removeCharacteristic(Resistor resistor){
+        characteristics.remove(resistor);
+    }
 
     public HashSet<Junction> getJunctions(){
         return this.junctions;
@@ -78,6 +136,35 @@ public class Circuit {
         return this.voltageSources;
     }
 
+    public HashSet<Capacitor> getCapacitors(){
+        return this.capacitors;
+    }
+
+    public HashSet<Inductor> getInductors(){
+        return this.inductors;
+    }
+
+    // the capacitance of every capacitor and the inductance of every inductor, for FlowNetwork.transientSimulation
+    public HashMap<Component, Double> getCapacitances(){
+        HashMap<Component, Double> capacitances = new HashMap<>();
+        for(Capacitor c : capacitors) capacitances.put(c, c.getCapacitance());
+        return capacitances;
+    }
+
+    public HashMap<Component, Double> getInductances(){
+        HashMap<Component, Double> inductances = new HashMap<>();
+        for(Inductor l : inductors) inductances.put(l, l.getInductance());
+        return inductances;
+    }
+
+    public HashMap<Component, Tolerance> getTolerances(){
+        return this.tolerances;
+    }
+
+    public HashMap<Component, NonlinearElement> getCharacteristics(){
+        return this.characteristics;
+    }
+
     public void disconnectAll(){
         for(Resistor p : resistors){
             p.getInput().disconnect();
@@ -85,6 +172,12 @@ public class Circuit {
         for(VoltageSource p : voltageSources){
             p.getInput().disconnect();
             p.getOutput().disconnect(); }
+        for(Component p : capacitors){
+            p.getInput().disconnect();
+            p.getOutput().disconnect(); }
+        for(Component p : inductors){
+            p.getInput().disconnect();
+            p.getOutput().disconnect(); }
         junctions.clear();
     }
 
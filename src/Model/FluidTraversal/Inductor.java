@@ -0,0 +1,20 @@
+package Model.FluidTraversal;
+
+// an inertance, the mass of the fluid in a pipe, which resists changes of the flow through it
+public class Inductor extends Component {
+
+    private double inductance;
+
+    protected Inductor(double inductance){
+        super(0);
+        this.inductance = inductance;
+    }
+
+    public double getInductance(){
+        return inductance;
+    }
+
+    protected void setInductance(double inductance){
+        this.inductance = inductance;
+    }
+}
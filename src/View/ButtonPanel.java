@@ -8,12 +8,17 @@ public class ButtonPanel {
     private final JPanel buttonPanel;
 
     private final JButton calculateButton;
+    private final JButton simulateButton;
     private final JButton rotateButton;
     private final JButton deleteButton;
     private final JButton configButton;
+    private final JButton toleranceButton;
+    private final JButton turbulenceButton;
 
     private final JButton newPipeButton;
     private final JButton newPumpButton;
+    private final JButton newCapacitorButton;
+    private final JButton newInductorButton;
     private final JButton linkButton;
 
     private final JButton exitModeButton;
@@ -26,21 +31,31 @@ public class ButtonPanel {
 
         this.newPipeButton = new JButton("Resistor");
         this.newPumpButton = new JButton("VoltageSource");
+        this.newCapacitorButton = new JButton("Capacitor");
+        this.newInductorButton = new JButton("Inductor");
         this.linkButton = new JButton("Link");
         this.rotateButton = new JButton("Rotate");
 
         this.configButton = new JButton("Config");
+        this.toleranceButton = new JButton("Tolerance");
+        this.turbulenceButton = new JButton("Turbulence");
         this.exitModeButton = new JButton("Exit Mode");
 
         this.calculateButton = new JButton("Calculate");
+        this.simulateButton = new JButton("Simulate");
         this.deleteButton = new JButton("Delete");
         this.clearBoardButton = new JButton("Clear");
 
         this.buttonPanel.add(newPipeButton);
         this.buttonPanel.add(newPumpButton);
+        this.buttonPanel.add(newCapacitorButton);
+        this.buttonPanel.add(newInductorButton);
         this.buttonPanel.add(linkButton);
         this.buttonPanel.add(configButton);
+        this.buttonPanel.add(toleranceButton);
+        this.buttonPanel.add(turbulenceButton);
         this.buttonPanel.add(calculateButton);
+        this.buttonPanel.add(simulateButton);
         this.buttonPanel.add(rotateButton);
         this.buttonPanel.add(deleteButton);
         this.buttonPanel.add(exitModeButton);
@@ -54,6 +69,9 @@ public class ButtonPanel {
     public JButton getCalculateButton(){
         return this.calculateButton;
     }
+    public JButton getSimulateButton(){
+        return this.simulateButton;
+    }
     public JButton getRotateButton(){
         return this.rotateButton;
     }
@@ -66,12 +84,24 @@ public class ButtonPanel {
     public JButton getNewPumpButton(){
         return this.newPumpButton;
     }
+    public JButton getNewCapacitorButton(){
+        return this.newCapacitorButton;
+    }
+    public JButton getNewInductorButton(){
+        return this.newInductorButton;
+    }
     public JButton getLinkButton(){
         return this.linkButton;
     }
     public JButton getConfigButton(){
         return this.configButton;
     }
+    public JButton getToleranceButton(){
+        return this.toleranceButton;
+    }
+    public JButton getTurbulenceButton(){
+        return this.turbulenceButton;
+    }
     public JButton getExitModeButton(){
         return this.exitModeButton;
     }
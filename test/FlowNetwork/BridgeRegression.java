@@ -0,0 +1,86 @@
+package FlowNetwork;
+
+import java.util.*;
+
+    /*
+    Compares the equivalent resistance and the flows of Analysis.PATHS with those of Analysis.NODAL on networks with
+    bridges, where the loop equations of the paths depend on each other, and on networks with resistors of weight 0,
+    where the reduced expression of EvaluableRegEx has no value. Every network is solved again with its weights changed
+    by a relative 1e-6 and 1e-3, so that a balanced bridge, whose equations are only singular up to rounding, is
+    solved as well as a bridge that is just off balance. Exits with status 1 on the first difference.
+
+    Run from the project directory with the classes of src and Jama on the class path:
+    javac -d out -cp jama.jar src/FlowNetwork/*.java test/FlowNetwork/BridgeRegression.java
+    java -cp out:jama.jar FlowNetwork.BridgeRegression
+     */
+public class BridgeRegression {
+
+    private static final double TOLERANCE = 1e-9;
+    private static final double[] CHANGES = {0, 1e-6, 1e-3};
+    // the order of the reduction follows the hashes of the resistors, so every network is built again this many times
+    private static final int REPETITIONS = 50;
+
+    private static class Resistor {
+        private final Node a, b;
+        private final double weight;
+        private Resistor(Node a, Node b, double weight){
+            this.a = a;
+            this.b = b;
+            this.weight = weight;
+            a.edges.add(this);
+            b.edges.add(this);}
+    }
+
+    private static class Node implements Vertex<Resistor> {
+        private final Set<Resistor> edges = new LinkedHashSet<>();
+        @Override
+        public Set<Resistor> getEdges(){ return edges; }
+        @Override
+        public Vertex<Resistor> vertexThrough(Resistor edge){ return edge.a == this ? edge.b : edge.a; }
+    }
+
+    // a network given by the ends and weight of every resistor, the first of which is the source
+    private static void check(String name, int[][] ends, double[] weights){
+        for(int repetition = 0; repetition < REPETITIONS; repetition++) for(double change : CHANGES){
+            Node[] nodes = new Node[Arrays.stream(ends).mapToInt(e -> Math.max(e[0], e[1])).max().orElse(0) + 1];
+            for(int v = 0; v < nodes.length; v++) nodes[v] = new Node();
+            List<Resistor> resistors = new ArrayList<>();
+            for(int i = 0; i < ends.length; i++){
+                double weight = i % 2 == 1 ? weights[i] * (1 + change) : weights[i];
+                resistors.add(new Resistor(nodes[ends[i][0]], nodes[ends[i][1]], weight));}
+            Set<Node> graph = new LinkedHashSet<>(Arrays.asList(nodes));
+            Resistor source = resistors.get(0);
+            FlowNetwork<Resistor> paths = new FlowNetwork<>(graph, r -> r.weight, FlowNetwork.Analysis.PATHS);
+            FlowNetwork<Resistor> nodal = new FlowNetwork<>(graph, r -> r.weight, FlowNetwork.Analysis.NODAL);
+            double expected = nodal.setPressure(source, 1, source.a), actual = paths.setPressure(source, 1, source.a);
+            if(!close(expected, actual)) fail(name, change, "equivalent resistance " + actual + " instead of " + expected);
+            Map<Resistor, Double> expectedFlows = nodal.flowsThrough(), actualFlows = paths.flowsThrough();
+            for(Resistor r : resistors){
+                if(r == source) continue;
+                double e = expectedFlows.getOrDefault(r, 0.0), a = actualFlows.getOrDefault(r, 0.0);
+                if(!close(e, a)) fail(name, change, "flow " + a + " instead of " + e + " through resistor " + resistors.indexOf(r));}
+        }
+        System.out.println(name + " ok");
+    }
+
+    private static boolean close(double expected, double actual){
+        return expected == actual || Math.abs(actual - expected) <= TOLERANCE * Math.max(1, Math.abs(expected));
+    }
+
+    private static void fail(String name, double change, String message){
+        System.out.println(name + " with weights changed by " + change + ": " + message);
+        System.exit(1);
+    }
+
+    public static void main(String[] args){
+        // the source between 0 and 3, and a bridge between 1 and 2 that is balanced before the weights are changed
+        check("Wheatstone bridge", new int[][]{{0, 3}, {0, 1}, {0, 2}, {1, 2}, {1, 3}, {2, 3}}, new double[]{0, 1, 2, 5, 2, 4});
+        // three bridges in a row between 0 and 7
+        check("ladder of bridges", new int[][]{{0, 7}, {0, 1}, {0, 2}, {1, 2}, {1, 3}, {2, 4}, {3, 4}, {3, 5}, {4, 6}, {5, 6},
+                {5, 7}, {6, 7}}, new double[]{0, 3, 3, 1, 2, 2, 7, 4, 4, 2, 1, 1});
+        // resistors of weight 0 that make Y-Delta open a side, which Delta-Y then multiplies by 0
+        check("weights of 0", new int[][]{{0, 1}, {1, 0}, {2, 1}, {3, 1}, {4, 0}, {5, 0}, {6, 4}, {4, 5}, {2, 3}, {1, 6},
+                {0, 2}, {5, 3}, {0, 6}, {5, 2}}, new double[]{2, 5, 1, 0, 1, 0, 8, 0, 2, 6, 3, 2, 0, 0});
+    }
+
+}